@@ -1,9 +1,11 @@
+# Thin wrapper around the jar's Main-Class, CoverageReportMerger: merges every *.rpt report of a suite
+# into system.rpt and requirements.rpt of the suite's report directory
 param (
     [parameter(ValueFromPipeline)]
     [ValidateNotNullOrEmpty()]
-    [string] $Suite
+    [string] $Suite,
+    [string] $Jar = ".\coverage4test.jar"
     );
-$systemReport = $null;
 $reportPath = ".\reports\$Suite";
 $systemFilename = "$reportPath\system.rpt";
 $requirementsFilename = "$reportPath\requirements.rpt";
@@ -13,6 +15,5 @@ if(Test-Path $systemFilename){
 if(Test-Path $requirementsFilename){
     Remove-Item $requirementsFilename;
     }
-$systemReport = '@{system_coverage:[]';
-Get-ChildItem $reportPath | Where-Object{($_.Name).Contains('system.rpt')} | ForEach-Object {$systemReport = $systemReport + (Get-Content $_.FullName | ConvertFrom-Json).};
-$systemReport | ConvertTo-Json;
\ No newline at end of file
+& java -jar $Jar --system $systemFilename --requirements $requirementsFilename $reportPath;
+exit $LASTEXITCODE;
@@ -0,0 +1,119 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Deterministic entries for the benchmarks: each test is recorded once per scenario, every scenario
+ * payload is shared by all tests, and each test covers a fixed set of requirements
+ */
+class BenchmarkEntries {
+    private static final int TESTS_PER_SUBJECT = 50;
+    private static final int TESTS_PER_REQUIREMENT = 10;
+    private final int entryCount;
+    private final String[] testNames;
+    private final String[] subjects;
+    private final String[][] requirements;
+    private final Object[] scenarios;
+
+    private BenchmarkEntries(int entryCount, int scenariosPerTest, int requirementsPerTest, int payloadSize) {
+        this.entryCount = entryCount;
+        int testCount = Math.max(1, entryCount / scenariosPerTest);
+        int requirementCount = Math.max(requirementsPerTest, testCount / TESTS_PER_REQUIREMENT);
+        testNames = new String[testCount];
+        subjects = new String[testCount];
+        requirements = new String[testCount][requirementsPerTest];
+        for (int test = 0; test < testCount; test++) {
+            testNames[test] = "test " + test;
+            subjects[test] = "subject " + test / TESTS_PER_SUBJECT;
+            for (int requirement = 0; requirement < requirementsPerTest; requirement++) {
+                requirements[test][requirement] = "requirement " + (test + requirement * 7919) % requirementCount;
+            }
+        }
+        scenarios = new Object[scenariosPerTest];
+        for (int scenario = 0; scenario < scenariosPerTest; scenario++) {
+            scenarios[scenario] = getPayload(scenario, payloadSize);
+        }
+    }
+
+    /***
+     * @param entryCount Number of entries
+     * @param scenariosPerTest Distinct scenarios recorded for each test
+     * @param requirementsPerTest Requirements covered by each test
+     * @param payloadSize Approximate length, in characters, of each scenario's JSON
+     * @return BenchmarkEntries instance
+     */
+    static BenchmarkEntries getInstance(int entryCount, int scenariosPerTest, int requirementsPerTest, int payloadSize) {
+        return new BenchmarkEntries(entryCount, scenariosPerTest, requirementsPerTest, payloadSize);
+    }
+
+    private static Object getPayload(int scenario, int payloadSize) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", scenario);
+        char[] text = new char[Math.max(0, payloadSize - 20)];
+        Arrays.fill(text, (char) ('a' + scenario % 26));
+        payload.put("text", new String(text));
+        return payload;
+    }
+
+    int getEntryCount() {
+        return entryCount;
+    }
+
+    int getTestCount() {
+        return testNames.length;
+    }
+
+    /***
+     * Record one entry
+     * @param report CoverageReport to which the entry is added
+     * @param entry Index of the entry, wrapped to the entry count
+     */
+    void record(CoverageReport report, int entry) {
+        int test = entry % testNames.length;
+        Object scenario = scenarios[(entry / testNames.length) % scenarios.length];
+        report.addTestEntry(testNames[test], subjects[test], 1, scenario, requirements[test]);
+    }
+
+    /***
+     * @param report CoverageReport to which every entry is added, through one TestHandle per test
+     * @return The report
+     */
+    CoverageReport recordAllWithHandles(CoverageReport report) {
+        TestHandle[] handles = new TestHandle[testNames.length];
+        for (int test = 0; test < testNames.length; test++) {
+            handles[test] = report.test(subjects[test], testNames[test], requirements[test]);
+        }
+        for (int entry = 0; entry < entryCount; entry++) {
+            handles[entry % testNames.length].record(1, scenarios[(entry / testNames.length) % scenarios.length]);
+        }
+        report.flush();
+        return report;
+    }
+
+    /***
+     * @param report CoverageReport to which every entry is added
+     * @return The report
+     */
+    CoverageReport recordAll(CoverageReport report) {
+        for (int entry = 0; entry < entryCount; entry++) {
+            record(report, entry);
+        }
+        report.flush();
+        return report;
+    }
+}
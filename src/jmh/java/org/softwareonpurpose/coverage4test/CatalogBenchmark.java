@@ -0,0 +1,66 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gap analysis of a populated report against a requirement catalog of 120,000 requirements
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CatalogBenchmark {
+    private static final int CATALOG_SIZE = 120_000;
+    @Param({"1000000"})
+    public int entries;
+    @Param({"3"})
+    public int requirementsPerTest;
+    private RequirementCatalog catalog;
+    private CoverageReport report;
+    private RequirementCatalog.CatalogCoverage previous;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> requirements = new ArrayList<>(CATALOG_SIZE);
+        for (int requirement = 0; requirement < CATALOG_SIZE; requirement++) {
+            requirements.add("requirement " + requirement);
+        }
+        catalog = RequirementCatalog.getInstance(requirements);
+        report = BenchmarkEntries.getInstance(entries, 1, requirementsPerTest, 32).recordAll(CoverageReport.getInstance());
+        previous = catalog.getCoverage(report);
+    }
+
+    @Benchmark
+    public RequirementCatalog.CatalogCoverage getCoverage() {
+        return catalog.getCoverage(report);
+    }
+
+    @Benchmark
+    public int getUncovered() {
+        return previous.getUncovered().size();
+    }
+
+    @Benchmark
+    public int getNewlyCovered() {
+        return previous.getNewlyCovered(previous).size();
+    }
+}
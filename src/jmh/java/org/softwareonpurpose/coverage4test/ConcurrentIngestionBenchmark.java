@@ -0,0 +1,69 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-threaded ingestion: entries per second recorded into one shared concurrent report, which is
+ * replaced each iteration.  Change the thread count with -t.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConcurrentIngestionBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int entries;
+    @Param({"1", "16"})
+    public int scenariosPerTest;
+    @Param({"3"})
+    public int requirementsPerTest;
+    @Param({"32", "512"})
+    public int payloadSize;
+    private BenchmarkEntries data;
+    private CoverageReport report;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkEntries.getInstance(entries, scenariosPerTest, requirementsPerTest, payloadSize);
+    }
+
+    @Setup(Level.Iteration)
+    public void newReport() {
+        report = CoverageReport.getConcurrentInstance();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int entry;
+
+        @Setup(Level.Trial)
+        public void setUp(ConcurrentIngestionBenchmark benchmark, ThreadParams thread) {
+            entry = (int) ((long) benchmark.entries * thread.getThreadIndex() / thread.getThreadCount());
+        }
+    }
+
+    @Benchmark
+    public void addTestEntry(Cursor cursor) {
+        data.record(report, cursor.entry);
+        cursor.entry = cursor.entry + 1 == entries ? 0 : cursor.entry + 1;
+    }
+}
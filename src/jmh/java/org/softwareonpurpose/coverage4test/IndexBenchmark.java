@@ -0,0 +1,64 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traceability queries against a CoverageIndex, compared with building the index
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IndexBenchmark {
+    @Param({"10000", "1000000"})
+    public int entries;
+    @Param({"3"})
+    public int requirementsPerTest;
+    private CoverageReport report;
+    private CoverageIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        report = BenchmarkEntries.getInstance(entries, 4, requirementsPerTest, 32).recordAll(CoverageReport.getInstance());
+        index = report.getIndex();
+    }
+
+    @Benchmark
+    public List<CoverageIndex.IndexedTest> getTestsCovering() {
+        return index.getTestsCovering("requirement 1");
+    }
+
+    @Benchmark
+    public List<String> getRequirementsCoveredBy() {
+        return index.getRequirementsCoveredBy("subject 1", "test 60");
+    }
+
+    @Benchmark
+    public List<String> getScenarios() {
+        return index.getScenarios("subject 1", "test 60");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public CoverageIndex getIndex() {
+        return report.getIndex();
+    }
+}
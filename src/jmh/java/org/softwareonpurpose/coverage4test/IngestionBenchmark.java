@@ -0,0 +1,59 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded ingestion: time to record every entry into a new report
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IngestionBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int entries;
+    @Param({"1", "16"})
+    public int scenariosPerTest;
+    @Param({"0", "3"})
+    public int requirementsPerTest;
+    @Param({"32", "512"})
+    public int payloadSize;
+    private BenchmarkEntries data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkEntries.getInstance(entries, scenariosPerTest, requirementsPerTest, payloadSize);
+    }
+
+    @Benchmark
+    public CoverageReport addTestEntry() {
+        return data.recordAll(CoverageReport.getInstance());
+    }
+
+    @Benchmark
+    public CoverageReport testHandle_record() {
+        return data.recordAllWithHandles(CoverageReport.getInstance());
+    }
+
+    @Benchmark
+    public CoverageReport addTestEntry_concurrentInstance() {
+        return data.recordAll(CoverageReport.getConcurrentInstance());
+    }
+}
@@ -0,0 +1,75 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retained heap per entry: the heap still in use, after collection, once every entry is recorded, divided
+ * by the entry count.  Reported as the retainedBytesPerEntry secondary result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:+UseSerialGC"})
+public class MemoryBenchmark {
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int entries;
+    @Param({"1", "16"})
+    public int scenariosPerTest;
+    @Param({"0", "3"})
+    public int requirementsPerTest;
+    @Param({"32", "512"})
+    public int payloadSize;
+    private BenchmarkEntries data;
+    private CoverageReport report;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Retained {
+        public double retainedBytesPerEntry;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkEntries.getInstance(entries, scenariosPerTest, requirementsPerTest, payloadSize);
+    }
+
+    @Setup(Level.Invocation)
+    public void collect() {
+        report = null;
+        usedHeap();
+    }
+
+    @Benchmark
+    public void retainedHeap(Retained retained) {
+        long before = usedHeap();
+        report = data.recordAll(CoverageReport.getInstance());
+        retained.retainedBytesPerEntry = (double) (usedHeap() - before) / entries;
+    }
+
+    private static long usedHeap() {
+        for (int collection = 0; collection < 3; collection++) {
+            System.gc();
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,64 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parallel rendering of a populated report on a pool of a given number of renderers, to show how render
+ * time falls as processors are added; compare with RenderingBenchmark.writeTo for sequential rendering
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParallelRenderingBenchmark {
+    @Param({"100000", "1000000"})
+    public int entries;
+    @Param({"16"})
+    public int scenariosPerTest;
+    @Param({"3"})
+    public int requirementsPerTest;
+    @Param({"128"})
+    public int payloadSize;
+    @Param({"1", "2", "4", "8"})
+    public int renderers;
+    private ExecutorService executor;
+    private CoverageReport report;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(renderers);
+        BenchmarkEntries data = BenchmarkEntries.getInstance(entries, scenariosPerTest, requirementsPerTest, payloadSize);
+        report = data.recordAll(CoverageReport.getInstance().renderInParallel(executor));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void writeTo() throws IOException {
+        report.writeTo(Writer.nullWriter());
+    }
+}
@@ -0,0 +1,74 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of a populated report, both to a String and streamed to a Writer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RenderingBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int entries;
+    @Param({"1", "16"})
+    public int scenariosPerTest;
+    @Param({"0", "3"})
+    public int requirementsPerTest;
+    @Param({"32", "512"})
+    public int payloadSize;
+    private CoverageReport report;
+    private CoverageReport parallelReport;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkEntries data = BenchmarkEntries.getInstance(entries, scenariosPerTest, requirementsPerTest, payloadSize);
+        report = data.recordAll(CoverageReport.getInstance());
+        parallelReport = data.recordAll(CoverageReport.getInstance().renderInParallel());
+    }
+
+    @Benchmark
+    public String getSystemCoverage() {
+        return report.getSystemCoverage();
+    }
+
+    @Benchmark
+    public String getRequirementsCoverage() {
+        return report.getRequirementsCoverage();
+    }
+
+    @Benchmark
+    public String toStringReport() {
+        return report.toString();
+    }
+
+    @Benchmark
+    public void writeTo() throws IOException {
+        report.writeTo(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public void writeTo_parallel() throws IOException {
+        parallelReport.writeTo(Writer.nullWriter());
+    }
+}
@@ -0,0 +1,82 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scenario ordering and de-duplication: comparing scenarios, and recording a scenario a test already holds
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScenarioBenchmark {
+    @Param({"16", "256"})
+    public int scenariosPerTest;
+    @Param({"32", "512", "8192"})
+    public int payloadSize;
+    private Scenario[] scenarios;
+    private Scenario[] copies;
+    private ExecutedTest test;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scenarios = new Scenario[scenariosPerTest];
+        copies = new Scenario[scenariosPerTest];
+        test = ExecutedTest.getInstance("test", "subject", null, null);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < payloadSize) {
+            text.append("payload ");
+        }
+        for (int scenario = 0; scenario < scenariosPerTest; scenario++) {
+            String detail = text + " " + scenario;
+            scenarios[scenario] = Scenario.getInstance(detail);
+            copies[scenario] = Scenario.getInstance(detail);
+            //noinspection ConstantConditions
+            test.addScenario(scenarios[scenario]);
+        }
+    }
+
+    @Benchmark
+    public Scenario getInstance() {
+        return Scenario.getInstance(scenarios[scenariosPerTest - 1].getDetail());
+    }
+
+    @Benchmark
+    public void compareTo_equal(Blackhole blackhole) {
+        for (int scenario = 0; scenario < scenariosPerTest; scenario++) {
+            blackhole.consume(scenarios[scenario].compareTo(copies[scenario]));
+        }
+    }
+
+    @Benchmark
+    public void compareTo_distinct(Blackhole blackhole) {
+        for (int scenario = 1; scenario < scenariosPerTest; scenario++) {
+            blackhole.consume(scenarios[scenario - 1].compareTo(scenarios[scenario]));
+        }
+    }
+
+    @Benchmark
+    public void addScenario_duplicate() {
+        for (Scenario copy : copies) {
+            test.addScenario(copy);
+        }
+    }
+}
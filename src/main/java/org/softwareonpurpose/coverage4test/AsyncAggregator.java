@@ -0,0 +1,231 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Queues entries from recording threads and ingests them, in batches, on one background thread.
+ * Each batch is sorted by subject and test (stably, so entries of one test keep their order) before it is
+ * handed on, so entries of the same test are ingested together.  If the aggregator thread dies (e.g. of an
+ * OutOfMemoryError), entries are no longer queued, flush() and close() ingest those left in the queue on
+ * the calling thread, and the first of them to do so throws the failure.
+ */
+class AsyncAggregator {
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final long POLL_MILLISECONDS = 100;
+    private static final Comparator<CoverageEntry> ENTRY_ORDER =
+            Comparator.comparing(CoverageEntry::getSubject, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                    .thenComparing(CoverageEntry::getTestName, Comparator.nullsFirst(Comparator.naturalOrder()));
+    private final BlockingQueue<CoverageEntry> queue;
+    private final BackpressurePolicy policy;
+    private final Consumer<CoverageEntry> sink;
+    private final Thread aggregator;
+    private final AtomicLong submitted = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Object progress = new Object();
+    private final ReentrantReadWriteLock submission = new ReentrantReadWriteLock();
+    private final AtomicBoolean failureReported = new AtomicBoolean();
+    private long processed;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    private AsyncAggregator(int capacity, BackpressurePolicy policy, Consumer<CoverageEntry> sink) {
+        this.queue = policy == BackpressurePolicy.GROW ? new LinkedBlockingQueue<>() : new ArrayBlockingQueue<>(capacity);
+        this.policy = policy;
+        this.sink = sink;
+        this.aggregator = new Thread(this::aggregate, "coverage4test-aggregator");
+        this.aggregator.setDaemon(true);
+    }
+
+    /***
+     * Start an aggregator thread
+     * @param capacity Number of entries queued before the backpressure policy applies
+     * @param policy What to do with an entry when the queue is full
+     * @param sink Ingests one entry; called only from the aggregator thread (or the closing thread)
+     * @return AsyncAggregator instance, started
+     */
+    static AsyncAggregator start(int capacity, BackpressurePolicy policy, Consumer<CoverageEntry> sink) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(String.format("Queue capacity must be positive: %d", capacity));
+        }
+        AsyncAggregator instance = new AsyncAggregator(capacity, policy, sink);
+        instance.aggregator.start();
+        return instance;
+    }
+
+    /***
+     * Queue an entry for ingestion, applying the backpressure policy when the queue is full.  The entry is
+     * counted as submitted before it is queued, so the aggregator never ingests an entry flush() cannot wait for.
+     * @param entry CoverageEntry to ingest
+     * @return boolean false if the entry was not queued and should be ingested by the caller
+     * (the aggregator is closed or has failed, or the caller was interrupted while blocked)
+     */
+    boolean submit(CoverageEntry entry) {
+        Lock lock = submission.readLock();
+        lock.lock();
+        try {
+            if (closed || failure != null) {
+                return false;
+            }
+            submitted.incrementAndGet();
+            if (policy == BackpressurePolicy.BLOCK) {
+                while (!queue.offer(entry, POLL_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                    if (failure != null) {
+                        submitted.decrementAndGet();
+                        return false;
+                    }
+                }
+            } else if (!queue.offer(entry)) {
+                submitted.decrementAndGet();
+                dropped.increment();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            submitted.decrementAndGet();
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * Wait until every entry queued before this call has been ingested
+     * @throws IllegalStateException the first time the aggregator thread is found to have failed
+     */
+    void flush() {
+        long target = submitted.get();
+        synchronized (progress) {
+            while (processed < target && failure == null) {
+                try {
+                    progress.wait(POLL_MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        if (failure != null) {
+            ingestRemaining();
+        }
+    }
+
+    /***
+     * Ingest everything queued, then stop the aggregator thread; entries submitted from now on are not queued
+     * @throws IllegalStateException the first time the aggregator thread is found to have failed
+     */
+    void close() {
+        Lock lock = submission.writeLock();
+        lock.lock();
+        try {
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            aggregator.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ingestRemaining();
+    }
+
+    private void ingestRemaining() {
+        List<CoverageEntry> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        ingest(remaining);
+        Throwable cause = failure;
+        if (cause != null && failureReported.compareAndSet(false, true)) {
+            throw new IllegalStateException("Coverage aggregator thread failed; entries are ingested on the recording thread", cause);
+        }
+    }
+
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    long getFailedCount() {
+        return failed.sum();
+    }
+
+    private void aggregate() {
+        List<CoverageEntry> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                CoverageEntry first;
+                try {
+                    first = queue.poll(POLL_MILLISECONDS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                    ingest(batch);
+                    batch.clear();
+                }
+            }
+        } catch (Error e) {
+            failure = e;
+            synchronized (progress) {
+                progress.notifyAll();
+            }
+        }
+    }
+
+    /***
+     * Ingest a batch; entries the sink rejects are counted as failed, and an Error other than a stack
+     * overflow counts the entries not yet ingested as failed and, on the aggregator thread, is recorded
+     * before progress is published so flush() cannot miss it
+     */
+    private void ingest(List<CoverageEntry> batch) {
+        batch.sort(ENTRY_ORDER);
+        int ingested = 0;
+        try {
+            for (CoverageEntry entry : batch) {
+                try {
+                    sink.accept(entry);
+                } catch (RuntimeException | StackOverflowError e) {
+                    failed.increment();
+                }
+                ingested++;
+            }
+        } catch (Error e) {
+            failed.add(batch.size() - ingested);
+            if (Thread.currentThread() == aggregator) {
+                failure = e;
+            }
+            throw e;
+        } finally {
+            synchronized (progress) {
+                processed += batch.size();
+                progress.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+/***
+ * What an asynchronous CoverageReport does with an entry when its queue is full
+ */
+public enum BackpressurePolicy {
+    /***
+     * Block the recording thread until the aggregator makes room
+     */
+    BLOCK,
+    /***
+     * Discard the entry and count it (see CoverageReport.getDroppedEntryCount())
+     */
+    DROP,
+    /***
+     * Grow the queue beyond its capacity; recording never waits and nothing is lost
+     */
+    GROW
+}
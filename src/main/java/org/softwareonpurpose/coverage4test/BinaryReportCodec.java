@@ -0,0 +1,351 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compact binary form of a report.  Every subject, test name, requirement and scenario is written in full
+ * only the first time it occurs; later occurrences are varint references to its index in a dictionary the
+ * reader rebuilds as it goes, so the format is written and read in one streaming pass.  System coverage
+ * holds each test once, with its scenarios and timing; requirements coverage refers to those tests by
+ * their position in system coverage rather than repeating them.  A requirement's tests, grouped by subject
+ * and sorted by name, are in system coverage order, so their positions are delta-encoded.
+ * <p>
+ * Layout: magic "C4TB", version; subject count, then per subject its name, test count and tests (name,
+ * verification count + 1 or 0, scenario count + 1 or 0, scenarios, timing flag and histograms);
+ * requirement count, then per requirement its name, test count and test position deltas.
+ */
+final class BinaryReportCodec {
+    private static final byte[] MAGIC = {'C', '4', 'T', 'B'};
+    private static final int VERSION = 1;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int BUFFER_CAPACITY = 1 << 16;
+    private static final int NEW_STRING = 0;
+
+    private BinaryReportCodec() {
+    }
+
+    /***
+     * Write a report; tests registered after their subject has been written are left out of requirements
+     * @param out OutputStream to which the report is written; flushed, but not closed
+     * @param subjects Subjects of system coverage, sorted by name
+     * @param requirements Requirements, sorted by name
+     * @param tests Resolves a test id to its ExecutedTest
+     * @throws IOException if the report cannot be written
+     */
+    static void write(OutputStream out, SortedMap<String, SubjectCoverage> subjects,
+                      Collection<RequirementsIndex.Requirement> requirements, IntFunction<ExecutedTest> tests) throws IOException {
+        Output output = new Output(out, true);
+        output.writeBytes(MAGIC);
+        output.writeVarint(VERSION);
+        Map<Integer, Integer> positions = new HashMap<>();
+        List<SubjectCoverage> written = new ArrayList<>();
+        for (SubjectCoverage subject : subjects.values()) {
+            if (!subject.isEmpty()) {
+                written.add(subject);
+            }
+        }
+        output.writeVarint(written.size());
+        for (SubjectCoverage subject : written) {
+            output.writeString(subject.getName());
+            List<ExecutedTest> subjectTests = new ArrayList<>(subject.getTests());
+            output.writeVarint(subjectTests.size());
+            for (ExecutedTest test : subjectTests) {
+                positions.put(test.getId(), positions.size());
+                writeTest(output, test);
+            }
+        }
+        output.writeVarint(requirements.size());
+        for (RequirementsIndex.Requirement requirement : requirements) {
+            output.writeString(requirement.getName());
+            int[] testPositions = requirement.getSubjects().values().stream().flatMapToInt(Arrays::stream)
+                    .filter(positions::containsKey).map(positions::get).sorted().toArray();
+            output.writeVarint(testPositions.length);
+            int previous = 0;
+            for (int position : testPositions) {
+                output.writeVarint(position - previous);
+                previous = position;
+            }
+        }
+        output.flush();
+    }
+
+    /***
+     * Read a report written by write, compressed with gzip or not.  Only the keys of each test of system
+     * coverage (subject, name, verification count) are held to resolve the positions listed under requirements.
+     * @param in InputStream of the report; read to its end, but not closed
+     * @param records Receives each test of system coverage, then each test listed under a requirement
+     * @throws IOException if the report cannot be read, or is not a binary report
+     */
+    static void read(InputStream in, Consumer<CoverageRecord> records) throws IOException {
+        Input input = new Input(decompress(in), true);
+        byte[] magic = input.readBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a binary coverage report");
+        }
+        int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported binary coverage report version %d", version));
+        }
+        List<CoverageRecord> testKeys = new ArrayList<>();
+        int subjectCount = input.readInt();
+        for (int subjectIndex = 0; subjectIndex < subjectCount; subjectIndex++) {
+            String subject = input.readString();
+            int testCount = input.readInt();
+            for (int testIndex = 0; testIndex < testCount; testIndex++) {
+                CoverageRecord test = readTest(input, subject);
+                testKeys.add(CoverageRecord.getInstance(null, subject, test.getTestName(), test.getVerificationCount(), null));
+                records.accept(test);
+            }
+        }
+        int requirementCount = input.readInt();
+        for (int requirementIndex = 0; requirementIndex < requirementCount; requirementIndex++) {
+            String requirement = input.readString();
+            int testCount = input.readInt();
+            int position = 0;
+            for (int testIndex = 0; testIndex < testCount; testIndex++) {
+                position += input.readInt();
+                if (position < 0 || position >= testKeys.size()) {
+                    throw new IOException(String.format("Invalid test position %d", position));
+                }
+                CoverageRecord test = testKeys.get(position);
+                records.accept(CoverageRecord.getInstance(requirement, test.getSubject(), test.getTestName(),
+                        test.getVerificationCount(), null));
+            }
+        }
+    }
+
+    /***
+     * Write a test of system coverage: its name, verification count, scenarios and timing
+     * @param output Output to which the test is written
+     * @param test ExecutedTest to write; its lock is held while it is written
+     * @throws IOException if the test cannot be written
+     */
+    static void writeTest(Output output, ExecutedTest test) throws IOException {
+        synchronized (test) {
+            output.writeString(test.getTestName());
+            Integer verificationCount = test.getVerificationCount();
+            output.writeVarint(verificationCount == null ? 0 : Integer.toUnsignedLong(verificationCount) + 1);
+            SortedSet<Scenario> scenarios = test.getRecordedScenarios();
+            output.writeVarint(scenarios == null ? 0 : scenarios.size() + 1L);
+            if (scenarios != null) {
+                for (Scenario scenario : scenarios) {
+                    output.writeString(scenario.getCanonical());
+                }
+            }
+            LatencyHistogram timing = test.getTiming();
+            output.writeVarint(timing == null ? 0 : 1);
+            if (timing != null) {
+                writeHistogram(output, timing);
+                if (scenarios != null) {
+                    for (Scenario scenario : scenarios) {
+                        LatencyHistogram scenarioTiming = test.getTiming(scenario);
+                        output.writeVarint(scenarioTiming == null ? 0 : 1);
+                        if (scenarioTiming != null) {
+                            writeHistogram(output, scenarioTiming);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /***
+     * Read a test written by writeTest
+     * @param input Input from which the test is read
+     * @param subject Subject of the test
+     * @return CoverageRecord of system coverage, with the test's timing if it was timed
+     * @throws IOException if the test cannot be read
+     */
+    static CoverageRecord readTest(Input input, String subject) throws IOException {
+        String testName = input.readString();
+        long verificationCount = input.readVarint();
+        long scenarioCount = input.readVarint();
+        List<Scenario> scenarios = scenarioCount == 0 ? null : new ArrayList<>();
+        for (long index = 1; index < scenarioCount; index++) {
+            scenarios.add(Scenario.fromJson(input.readString()));
+        }
+        Integer verifications = verificationCount == 0 ? null : (int) (verificationCount - 1);
+        if (input.readVarint() == 0) {
+            return CoverageRecord.getInstance(null, subject, testName, verifications, scenarios);
+        }
+        LatencyHistogram timing = readHistogram(input);
+        List<LatencyHistogram> scenarioTimings = new ArrayList<>();
+        for (long index = 1; index < scenarioCount; index++) {
+            scenarioTimings.add(input.readVarint() == 0 ? null : readHistogram(input));
+        }
+        return CoverageRecord.getTimedInstance(subject, testName, verifications, scenarios, timing, scenarioTimings);
+    }
+
+    private static void writeHistogram(Output output, LatencyHistogram histogram) throws IOException {
+        int[] counts = histogram.getBucketCounts();
+        output.writeVarint(histogram.getFirstBucket());
+        output.writeVarint(counts.length);
+        for (int count : counts) {
+            output.writeVarint(count);
+        }
+        output.writeVarint(histogram.getMax());
+    }
+
+    private static LatencyHistogram readHistogram(Input input) throws IOException {
+        int firstBucket = input.readInt();
+        int[] counts = new int[input.readInt()];
+        for (int index = 0; index < counts.length; index++) {
+            counts[index] = input.readInt();
+        }
+        return LatencyHistogram.getInstance(firstBucket, counts, input.readVarint());
+    }
+
+    private static InputStream decompress(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_CAPACITY);
+        buffered.mark(2);
+        int magic = buffered.read() | buffered.read() << 8;
+        buffered.reset();
+        return magic == GZIP_MAGIC ? new BufferedInputStream(new GZIPInputStream(buffered, BUFFER_CAPACITY), BUFFER_CAPACITY) : buffered;
+    }
+
+    /**
+     * Varints and strings, dictionary-encoded or written in full, written to a buffered stream
+     */
+    static class Output {
+        private final OutputStream out;
+        private final Map<String, Integer> dictionary;
+
+        /***
+         * @param out OutputStream to which values are written
+         * @param dictionaryEncoded Whether to write repeated strings as references to their first occurrence
+         */
+        Output(OutputStream out, boolean dictionaryEncoded) {
+            this.out = new BufferedOutputStream(out, BUFFER_CAPACITY);
+            this.dictionary = dictionaryEncoded ? new HashMap<>() : null;
+        }
+
+        void writeString(String value) throws IOException {
+            if (dictionary == null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint(bytes.length);
+                out.write(bytes);
+                return;
+            }
+            Integer index = dictionary.get(value);
+            if (index != null) {
+                writeVarint(index + 1L);
+                return;
+            }
+            dictionary.put(value, dictionary.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(NEW_STRING);
+            writeVarint(bytes.length);
+            out.write(bytes);
+        }
+
+        void writeVarint(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            out.write(bytes);
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * Varints and strings, dictionary-encoded or written in full, read from a buffered stream
+     */
+    static class Input {
+        private final InputStream in;
+        private final List<String> dictionary;
+
+        /***
+         * @param in InputStream from which values are read
+         * @param dictionaryEncoded Whether repeated strings are references to their first occurrence
+         */
+        Input(InputStream in, boolean dictionaryEncoded) {
+            this.in = in;
+            this.dictionary = dictionaryEncoded ? new ArrayList<>() : null;
+        }
+
+        String readString() throws IOException {
+            if (dictionary == null) {
+                return new String(readBytes(readInt()), StandardCharsets.UTF_8);
+            }
+            long reference = readVarint();
+            if (reference != NEW_STRING) {
+                if (reference > dictionary.size()) {
+                    throw new IOException(String.format("Invalid string reference %d", reference));
+                }
+                return dictionary.get((int) reference - 1);
+            }
+            String value = new String(readBytes(readInt()), StandardCharsets.UTF_8);
+            dictionary.add(value);
+            return value;
+        }
+
+        int readInt() throws IOException {
+            long value = readVarint();
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException(String.format("Invalid count %d", value));
+            }
+            return (int) value;
+        }
+
+        long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                int next = in.read();
+                if (next < 0) {
+                    throw new EOFException("Binary coverage report truncated");
+                }
+                value |= (long) (next & 0x7F) << shift;
+                if ((next & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid varint");
+        }
+
+        byte[] readBytes(int length) throws IOException {
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length < length) {
+                throw new EOFException("Binary coverage report truncated");
+            }
+            return bytes;
+        }
+    }
+}
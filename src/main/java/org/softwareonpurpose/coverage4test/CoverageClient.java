@@ -0,0 +1,261 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends the entries of a test JVM to a CoverageCollectorServer.  Entries are encoded by an EntryCodec into
+ * a batch, and the batch is written as one frame (its length, then each entry's length and encoding) when
+ * it fills, on a fixed interval, and on close, so a test pays for a socket write only once per batch.
+ * Batches the server cannot be sent, because it could not be reached or stopped responding, are appended
+ * to a fallback CoverageJournal instead, from which the server recovers them.  The socket is non-blocking:
+ * a server that accepts no bytes of a batch for the send timeout is disconnected, so a stalled server
+ * never blocks a test for longer than that.  While disconnected, the client reconnects before sending a
+ * batch, waiting a second after the first failure and doubling the wait after each one, up to 30 seconds.
+ */
+class CoverageClient implements EntrySink {
+    static final int FRAME_HEADER_LENGTH = Integer.BYTES;
+    private static final int BATCH_CAPACITY = 1 << 16;
+    private static final long RECONNECT_DELAY_MILLIS = 1_000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30_000;
+    private final SocketAddress address;
+    private final Path fallbackPath;
+    private final long flushIntervalMillis;
+    private final long sendTimeoutMillis;
+    private final EntryCodec codec = EntryCodec.getInstance();
+    private final LongAdder dropped = new LongAdder();
+    private final ScheduledExecutorService flusher;
+    private ByteBuffer batch = ByteBuffer.allocate(BATCH_CAPACITY);
+    private int batchedCount;
+    private SocketChannel channel;
+    private Selector selector;
+    private CoverageJournal fallback;
+    private boolean closed;
+    private long reconnectDelayMillis = RECONNECT_DELAY_MILLIS;
+    private long reconnectNanos;
+
+    private CoverageClient(SocketAddress address, Path fallbackPath, long flushIntervalMillis, long sendTimeoutMillis) {
+        this.address = address;
+        this.fallbackPath = fallbackPath;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        batch.position(FRAME_HEADER_LENGTH);
+        open();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "coverage4test-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * Connect to a CoverageCollectorServer; if it cannot be reached, every entry goes to the fallback journal
+     * @param address UnixDomainSocketAddress or InetSocketAddress of the server
+     * @param fallbackPath Path of the journal to which entries are appended when they cannot be sent
+     * @param flushIntervalMillis Milliseconds between sending batched entries
+     * @param sendTimeoutMillis Milliseconds the server may accept no bytes of a batch before it is disconnected
+     * @return CoverageClient instance
+     */
+    static CoverageClient connect(SocketAddress address, Path fallbackPath, long flushIntervalMillis, long sendTimeoutMillis) {
+        return new CoverageClient(address, fallbackPath, flushIntervalMillis, sendTimeoutMillis);
+    }
+
+    @Override
+    public synchronized boolean append(String testName, String subject, Integer verificationCount, Scenario scenario,
+                                       long elapsedNanos, String... requirements) {
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+        int length = codec.encode(testName, subject, verificationCount, scenario, elapsedNanos, requirements);
+        int recordLength = Integer.BYTES + length;
+        if (batch.remaining() < recordLength) {
+            flush();
+        }
+        if (batch.remaining() < recordLength) {
+            ByteBuffer grown = ByteBuffer.allocate(batch.position() + recordLength);
+            grown.put(batch.array(), 0, batch.position());
+            batch = grown;
+        }
+        batch.putInt(length).put(codec.getBuffer(), 0, length);
+        batchedCount++;
+        return true;
+    }
+
+    /***
+     * Send the batched entries, or journal them if they cannot be sent
+     */
+    synchronized void flush() {
+        if (batchedCount == 0) {
+            return;
+        }
+        if (!send()) {
+            journal();
+        }
+        batch.clear().position(FRAME_HEADER_LENGTH);
+        batchedCount = 0;
+    }
+
+    /***
+     * @return boolean whether connected to the server, rather than journaling every entry
+     */
+    synchronized boolean isConnected() {
+        return channel != null;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            flush();
+            closed = true;
+            try {
+                if (channel != null) {
+                    channel.close();
+                    selector.close();
+                }
+            } finally {
+                if (fallback != null) {
+                    fallback.close();
+                }
+            }
+        }
+    }
+
+    private boolean send() {
+        if (channel == null && (System.nanoTime() - reconnectNanos < 0 || !open())) {
+            return false;
+        }
+        ByteBuffer frame = batch.duplicate().flip();
+        frame.putInt(0, frame.limit() - FRAME_HEADER_LENGTH);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        try {
+            while (frame.hasRemaining()) {
+                if (channel.write(frame) > 0) {
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+                    continue;
+                }
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    closeChannelQuietly();
+                    return false;
+                }
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos)));
+                selector.selectedKeys().clear();
+            }
+            return true;
+        } catch (IOException e) {
+            closeChannelQuietly();
+            return false;
+        }
+    }
+
+    private void journal() {
+        try {
+            if (fallback == null) {
+                fallback = CoverageJournal.open(fallbackPath, flushIntervalMillis);
+            }
+        } catch (IOException e) {
+            dropped.add(batchedCount);
+            return;
+        }
+        byte[] records = batch.array();
+        int offset = FRAME_HEADER_LENGTH;
+        for (int journaled = 0; journaled < batchedCount; journaled++) {
+            int length = ByteBuffer.wrap(records, offset, Integer.BYTES).getInt();
+            try {
+                fallback.appendEncoded(records, offset + Integer.BYTES, length);
+            } catch (IOException e) {
+                dropped.add(batchedCount - journaled);
+                return;
+            }
+            offset += Integer.BYTES + length;
+        }
+    }
+
+    /***
+     * Connect to the server, or schedule the next attempt
+     * @return boolean whether connected
+     */
+    private boolean open() {
+        SocketChannel opened = null;
+        Selector openedSelector = null;
+        try {
+            opened = SocketChannel.open(address);
+            opened.configureBlocking(false);
+            openedSelector = Selector.open();
+            opened.register(openedSelector, SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            closeQuietly(opened, openedSelector);
+            scheduleReconnect();
+            return false;
+        }
+        channel = opened;
+        selector = openedSelector;
+        reconnectDelayMillis = RECONNECT_DELAY_MILLIS;
+        return true;
+    }
+
+    /***
+     * Disconnect from the server; a frame only partly sent is discarded by the server, and journaled here
+     */
+    private void closeChannelQuietly() {
+        closeQuietly(channel, selector);
+        channel = null;
+        selector = null;
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        reconnectNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(reconnectDelayMillis);
+        reconnectDelayMillis = Math.min(reconnectDelayMillis * 2, MAX_RECONNECT_DELAY_MILLIS);
+    }
+
+    private static void closeQuietly(SocketChannel channel, Selector selector) {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (selector != null) {
+                selector.close();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collector daemon receiving the entries of every test JVM of a run over a Unix domain (or loopback TCP)
+ * socket, into one concurrent CoverageReport.  Test JVMs record to a report from
+ * CoverageReport.getClientInstance, which batches entries and falls back to a journal when this server
+ * cannot be reached; recover(Path) adds the entries of such a journal.  A client sending a malformed frame
+ * is disconnected and counted by getFailedClientCount(); the entries of its earlier frames are kept.
+ */
+public final class CoverageCollectorServer implements Closeable {
+    private static final int MAX_FRAME_LENGTH = 1 << 26;
+    private static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final CoverageReport report = CoverageReport.getConcurrentInstance();
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final Set<Thread> receivers = ConcurrentHashMap.newKeySet();
+    private final LongAdder failedClients = new LongAdder();
+    private final Thread acceptor;
+
+    private CoverageCollectorServer(ServerSocketChannel server) throws IOException {
+        this.server = server;
+        this.address = server.getLocalAddress();
+        this.acceptor = new Thread(this::accept, "coverage4test-collector");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /***
+     * Start a collector server
+     * @param address UnixDomainSocketAddress of the socket file to create, or InetSocketAddress to listen on
+     * @return CoverageCollectorServer instance, accepting clients until closed
+     * @throws IOException if the socket cannot be bound
+     */
+    public static CoverageCollectorServer start(SocketAddress address) throws IOException {
+        ServerSocketChannel server = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        try {
+            server.bind(address);
+            return new CoverageCollectorServer(server);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+    }
+
+    /***
+     * @return CoverageReport holding every entry received or recovered
+     */
+    public CoverageReport getReport() {
+        return report;
+    }
+
+    /***
+     * @return SocketAddress bound, e.g. to find the port chosen for an InetSocketAddress of port 0
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    /***
+     * @return long number of clients disconnected for a malformed frame or a failed read
+     */
+    public long getFailedClientCount() {
+        return failedClients.sum();
+    }
+
+    /***
+     * @return int number of clients currently connected
+     */
+    int getConnectedClientCount() {
+        return receivers.size();
+    }
+
+    /***
+     * Add the entries of a client's fallback journal, if it exists
+     * @param fallback Path of the journal given to CoverageReport.getClientInstance
+     * @throws IOException if the journal cannot be read
+     */
+    public void recover(Path fallback) throws IOException {
+        if (Files.exists(fallback)) {
+            CoverageJournal.replay(fallback, report::ingest);
+        }
+    }
+
+    /***
+     * Stop accepting clients and wait for connected clients to close, disconnecting those that have not
+     * within 10 seconds
+     * @throws IOException if the socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS;
+        try {
+            acceptor.join(CLOSE_TIMEOUT_MILLIS);
+            for (Thread receiver : receivers) {
+                receiver.join(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SocketChannel connection : connections) {
+            connection.close();
+        }
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+
+    /***
+     * Wait until the server stops accepting clients, i.e. until it is closed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitClose() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /***
+     * Collect entries until the JVM is stopped (e.g. by SIGTERM or Ctrl-C), then write the report
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int status = run(args, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /***
+     * Run the command line, collecting entries until the JVM is stopped
+     * @param args Command line arguments
+     * @param out PrintStream to which the address collected on is written once started
+     * @param err PrintStream to which usage errors, and a failure to write the report, are written
+     * @return int exit status: 0, or 2 for a usage error
+     * @throws IOException if the socket cannot be bound
+     * @throws InterruptedException if interrupted while collecting
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) throws IOException, InterruptedException {
+        SocketAddress address = null;
+        Path output = null;
+        for (int index = 0; index < args.length; index++) {
+            String argument = args[index];
+            if (index + 1 == args.length) {
+                return usage(err, String.format("%s requires a value", argument));
+            }
+            switch (argument) {
+                case "--socket":
+                    address = UnixDomainSocketAddress.of(args[++index]);
+                    break;
+                case "--port":
+                    address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[++index]));
+                    break;
+                case "--output":
+                    output = Path.of(args[++index]);
+                    break;
+                default:
+                    return usage(err, String.format("Unknown option %s", argument));
+            }
+        }
+        if (address == null || output == null) {
+            return usage(err, "A socket or port, and an output file, are required");
+        }
+        CoverageCollectorServer collector = start(address);
+        Path reportPath = output;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                collector.close();
+                collector.getReport().writeTo(reportPath);
+            } catch (IOException e) {
+                err.printf("Failed to write %s: %s%n", reportPath, e);
+            }
+        }));
+        out.printf("Collecting coverage on %s%n", collector.getAddress());
+        out.flush();
+        collector.awaitClose();
+        return 0;
+    }
+
+    private static int usage(PrintStream err, String message) {
+        err.println(message);
+        err.println("Usage: java -cp coverage4test.jar org.softwareonpurpose.coverage4test.CoverageCollectorServer"
+                + " --socket file|--port port --output file");
+        return 2;
+    }
+
+    private void accept() {
+        while (server.isOpen()) {
+            SocketChannel connection;
+            try {
+                connection = server.accept();
+            } catch (IOException e) {
+                return;
+            }
+            connections.add(connection);
+            Thread receiver = new Thread(() -> receive(connection), "coverage4test-collector-client");
+            receiver.setDaemon(true);
+            receivers.add(receiver);
+            receiver.start();
+        }
+    }
+
+    private void receive(SocketChannel connection) {
+        ByteBuffer header = ByteBuffer.allocate(CoverageClient.FRAME_HEADER_LENGTH);
+        try {
+            while (true) {
+                header.clear();
+                if (!readFully(connection, header)) {
+                    return;
+                }
+                int length = header.getInt(0);
+                if (length < 0 || length > MAX_FRAME_LENGTH) {
+                    throw new IOException(String.format("Invalid frame length %d", length));
+                }
+                ByteBuffer frame = ByteBuffer.allocate(length);
+                if (!readFully(connection, frame)) {
+                    throw new EOFException("Frame truncated");
+                }
+                frame.flip();
+                while (frame.hasRemaining()) {
+                    int entryLength = frame.getInt();
+                    ByteBuffer entry = frame.slice(frame.position(), entryLength);
+                    frame.position(frame.position() + entryLength);
+                    report.ingest(EntryCodec.decode(entry));
+                }
+            }
+        } catch (ClosedChannelException ignored) {
+        } catch (IOException | RuntimeException e) {
+            failedClients.increment();
+        } finally {
+            receivers.remove(Thread.currentThread());
+            connections.remove(connection);
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /***
+     * @return boolean false if the connection ended cleanly before any byte was read
+     * @throws EOFException if the connection ended part way through the buffer
+     */
+    private static boolean readFully(SocketChannel connection, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (connection.read(buffer) < 0) {
+                if (buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Connection closed mid-frame");
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+/**
+ * One addTestEntry call, held until it is ingested into a CoverageReport.  Holds either the test data
+ * as recorded, or the Scenario already built from it (e.g. when read back from a journal).
+ */
+class CoverageEntry {
+    static final long UNTIMED = -1;
+    private final String testName;
+    private final String subject;
+    private final Integer verificationCount;
+    private final Object testData;
+    private final Scenario scenario;
+    private final String[] requirements;
+    private final long elapsedNanos;
+
+    private CoverageEntry(String testName, String subject, Integer verificationCount, Object testData, Scenario scenario,
+                          long elapsedNanos, String[] requirements) {
+        this.testName = testName;
+        this.subject = subject;
+        this.verificationCount = verificationCount;
+        this.testData = testData;
+        this.scenario = scenario;
+        this.requirements = requirements;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    static CoverageEntry getInstance(String testName, String subject, Integer verificationCount, Object testData,
+                                     long elapsedNanos, String... requirements) {
+        return new CoverageEntry(testName, subject, verificationCount, testData, null, elapsedNanos, requirements);
+    }
+
+    static CoverageEntry getRecordedInstance(String testName, String subject, Integer verificationCount, Scenario scenario,
+                                             long elapsedNanos, String... requirements) {
+        return new CoverageEntry(testName, subject, verificationCount, null, scenario, elapsedNanos, requirements);
+    }
+
+    String getTestName() {
+        return testName;
+    }
+
+    String getSubject() {
+        return subject;
+    }
+
+    Integer getVerificationCount() {
+        return verificationCount;
+    }
+
+    /***
+     * @return boolean whether the entry holds test data not yet serialized to a Scenario
+     */
+    boolean hasTestData() {
+        return testData != null;
+    }
+
+    /***
+     * @return Scenario of the entry, captured from the test data unless recorded as a Scenario; null if none
+     */
+    Scenario getScenario() {
+        if (scenario != null || testData == null) {
+            return scenario;
+        }
+        return Scenario.getCapturedInstance(testData);
+    }
+
+    String[] getRequirements() {
+        return requirements;
+    }
+
+    /***
+     * @return long elapsed nanoseconds of the test execution, or UNTIMED
+     */
+    long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
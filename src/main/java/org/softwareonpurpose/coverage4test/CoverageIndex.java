@@ -0,0 +1,433 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.IntFunction;
+
+/**
+ * Snapshot of a CoverageReport indexed for traceability queries in every direction: requirement, subject,
+ * test and scenario.  Subjects, requirements, tests and scenarios are numbered densely; tests are numbered
+ * in System Coverage order, so the tests of a subject are one contiguous range.  Every other relation is
+ * held as int postings (an offsets array into one values array per relation, sorted), so a lookup is one
+ * hash or binary search, and each result is an unmodifiable, lazily resolved view of its postings.
+ * Entries added to the report after the index is built are not reflected; build another with
+ * CoverageReport.getIndex().
+ */
+public final class CoverageIndex {
+    private final String[] subjects;
+    private final int[] subjectOffsets;
+    private final IndexedTest[] tests;
+    private final String[] requirements;
+    private final String[] scenarios;
+    private final Map<String, Integer> subjectIds;
+    private final Map<String, Integer> requirementIds;
+    private final Map<String, Integer> scenarioIds;
+    private final Postings requirementTests;
+    private final Postings requirementSubjects;
+    private final Postings subjectRequirements;
+    private final Postings testRequirements;
+    private final Postings testScenarios;
+    private final Postings scenarioTests;
+
+    private CoverageIndex(SortedMap<String, SubjectCoverage> systemCoverage, Collection<RequirementsIndex.Requirement> requirementEntries,
+                          int testIdBound) {
+        int[] testOrdinals = new int[testIdBound];
+        Arrays.fill(testOrdinals, -1);
+        List<String> subjectNames = new ArrayList<>();
+        IntList subjectStarts = new IntList();
+        List<IndexedTest> indexedTests = new ArrayList<>();
+        scenarioIds = new HashMap<>();
+        List<String> scenarioValues = new ArrayList<>();
+        IntList scenarioOffsets = new IntList();
+        IntList scenarioPostings = new IntList();
+        for (SubjectCoverage subject : systemCoverage.values()) {
+            int first = indexedTests.size();
+            for (ExecutedTest test : subject.getTests()) {
+                int id = test.getId();
+                if (id < 0 || id >= testIdBound) {
+                    continue;
+                }
+                testOrdinals[id] = indexedTests.size();
+                indexedTests.add(new IndexedTest(subject.getName(), test.getTestName(), test.getVerificationCount()));
+                scenarioOffsets.add(scenarioPostings.size());
+                synchronized (test) {
+                    SortedSet<Scenario> testScenarios = test.getRecordedScenarios();
+                    if (testScenarios != null) {
+                        for (Scenario scenario : testScenarios) {
+                            scenarioPostings.add(scenarioIds.computeIfAbsent(scenario.getCanonical(), canonical -> {
+                                scenarioValues.add(canonical);
+                                return scenarioValues.size() - 1;
+                            }));
+                        }
+                    }
+                }
+            }
+            if (indexedTests.size() > first) {
+                subjectNames.add(subject.getName());
+                subjectStarts.add(first);
+            }
+        }
+        subjectStarts.add(indexedTests.size());
+        scenarioOffsets.add(scenarioPostings.size());
+        this.subjects = subjectNames.toArray(new String[0]);
+        this.subjectOffsets = subjectStarts.toArray();
+        this.tests = indexedTests.toArray(new IndexedTest[0]);
+        this.scenarios = scenarioValues.toArray(new String[0]);
+        this.subjectIds = getIds(subjects);
+        this.testScenarios = new Postings(scenarioOffsets.toArray(), scenarioPostings.toArray());
+        this.scenarioTests = testScenarios.transpose(scenarios.length);
+        int[] testSubjects = new int[tests.length];
+        for (int subject = 0; subject < subjects.length; subject++) {
+            Arrays.fill(testSubjects, subjectOffsets[subject], subjectOffsets[subject + 1], subject);
+        }
+        List<String> requirementNames = new ArrayList<>();
+        IntList testOffsets = new IntList();
+        IntList testPostings = new IntList();
+        IntList subjectOffsetList = new IntList();
+        IntList subjectPostings = new IntList();
+        for (RequirementsIndex.Requirement requirement : requirementEntries) {
+            requirementNames.add(requirement.getName());
+            int first = testPostings.size();
+            testOffsets.add(first);
+            for (int[] ids : requirement.getSubjects().values()) {
+                for (int id : ids) {
+                    if (id < testIdBound && testOrdinals[id] >= 0) {
+                        testPostings.add(testOrdinals[id]);
+                    }
+                }
+            }
+            testPostings.sort(first);
+            subjectOffsetList.add(subjectPostings.size());
+            int previousSubject = -1;
+            for (int index = first; index < testPostings.size(); index++) {
+                int subject = testSubjects[testPostings.get(index)];
+                if (subject != previousSubject) {
+                    subjectPostings.add(subject);
+                    previousSubject = subject;
+                }
+            }
+        }
+        testOffsets.add(testPostings.size());
+        subjectOffsetList.add(subjectPostings.size());
+        this.requirements = requirementNames.toArray(new String[0]);
+        this.requirementIds = getIds(requirements);
+        this.requirementTests = new Postings(testOffsets.toArray(), testPostings.toArray());
+        this.requirementSubjects = new Postings(subjectOffsetList.toArray(), subjectPostings.toArray());
+        this.testRequirements = requirementTests.transpose(tests.length);
+        this.subjectRequirements = getSubjectRequirements();
+    }
+
+    /***
+     * @param systemCoverage Subjects of the report, sorted by name
+     * @param requirements Requirements of the report, sorted by name
+     * @param testIdBound Number of tests registered in the report; tests registered later are left out
+     * @return CoverageIndex instance
+     */
+    static CoverageIndex getInstance(SortedMap<String, SubjectCoverage> systemCoverage,
+                                     Collection<RequirementsIndex.Requirement> requirements, int testIdBound) {
+        return new CoverageIndex(systemCoverage, requirements, testIdBound);
+    }
+
+    /***
+     * @return List of the subjects, sorted by name
+     */
+    public List<String> getSubjects() {
+        return Collections.unmodifiableList(Arrays.asList(subjects));
+    }
+
+    /***
+     * @return List of the requirements, sorted by name
+     */
+    public List<String> getRequirements() {
+        return Collections.unmodifiableList(Arrays.asList(requirements));
+    }
+
+    /***
+     * @return List of every test, sorted by subject then name
+     */
+    public List<IndexedTest> getTests() {
+        return Collections.unmodifiableList(Arrays.asList(tests));
+    }
+
+    /***
+     * @param subject Name of a subject
+     * @return List of the subject's tests, sorted by name; empty if the subject is not in the report
+     */
+    public List<IndexedTest> getTests(String subject) {
+        Integer id = subjectIds.get(subject);
+        return id == null ? Collections.emptyList() : getTests().subList(subjectOffsets[id], subjectOffsets[id + 1]);
+    }
+
+    /***
+     * @param subject Name of a subject
+     * @param testName Name of a test of the subject
+     * @return IndexedTest, or null if the report holds no such test
+     */
+    public IndexedTest getTest(String subject, String testName) {
+        int ordinal = findTest(subject, testName);
+        return ordinal < 0 ? null : tests[ordinal];
+    }
+
+    /***
+     * @param requirement Name of a requirement
+     * @return List of the tests covering the requirement, sorted by subject then name
+     */
+    public List<IndexedTest> getTestsCovering(String requirement) {
+        return requirementTests.view(requirementIds.get(requirement), test -> tests[test]);
+    }
+
+    /***
+     * @param requirement Name of a requirement
+     * @return List of the subjects of the tests covering the requirement, sorted by name
+     */
+    public List<String> getSubjectsCovering(String requirement) {
+        return requirementSubjects.view(requirementIds.get(requirement), subject -> subjects[subject]);
+    }
+
+    /***
+     * @param subject Name of a subject
+     * @return List of the requirements covered by any test of the subject, sorted by name
+     */
+    public List<String> getRequirementsCoveredBy(String subject) {
+        return subjectRequirements.view(subjectIds.get(subject), requirement -> requirements[requirement]);
+    }
+
+    /***
+     * @param subject Name of a subject
+     * @param testName Name of a test of the subject
+     * @return List of the requirements covered by the test, sorted by name
+     */
+    public List<String> getRequirementsCoveredBy(String subject, String testName) {
+        return testRequirements.view(getOrdinal(subject, testName), requirement -> requirements[requirement]);
+    }
+
+    /***
+     * @param subject Name of a subject
+     * @param testName Name of a test of the subject
+     * @return List of the canonical JSON of each scenario the test ran, in report order
+     */
+    public List<String> getScenarios(String subject, String testName) {
+        return testScenarios.view(getOrdinal(subject, testName), scenario -> scenarios[scenario]);
+    }
+
+    /***
+     * @param scenario Test data, as passed to CoverageReport.addTestEntry
+     * @return List of the tests which ran the scenario, sorted by subject then name
+     */
+    public List<IndexedTest> getTestsWithScenario(Object scenario) {
+        return scenarioTests.view(scenarioIds.get(Scenario.getInstance(scenario).getCanonical()), test -> tests[test]);
+    }
+
+    private Integer getOrdinal(String subject, String testName) {
+        int ordinal = findTest(subject, testName);
+        return ordinal < 0 ? null : ordinal;
+    }
+
+    private int findTest(String subject, String testName) {
+        Integer id = subjectIds.get(subject);
+        if (id == null || testName == null) {
+            return -1;
+        }
+        int low = subjectOffsets[id];
+        int high = subjectOffsets[id + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = tests[middle].getTestName().compareTo(testName);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private Postings getSubjectRequirements() {
+        int[] offsets = new int[subjects.length + 1];
+        IntList postings = new IntList();
+        int[] lastSubject = new int[requirements.length];
+        Arrays.fill(lastSubject, -1);
+        for (int subject = 0; subject < subjects.length; subject++) {
+            offsets[subject] = postings.size();
+            for (int test = subjectOffsets[subject]; test < subjectOffsets[subject + 1]; test++) {
+                for (int index = testRequirements.offsets[test]; index < testRequirements.offsets[test + 1]; index++) {
+                    int requirement = testRequirements.values[index];
+                    if (lastSubject[requirement] != subject) {
+                        lastSubject[requirement] = subject;
+                        postings.add(requirement);
+                    }
+                }
+            }
+            postings.sort(offsets[subject]);
+        }
+        offsets[subjects.length] = postings.size();
+        return new Postings(offsets, postings.toArray());
+    }
+
+    private static Map<String, Integer> getIds(String[] names) {
+        Map<String, Integer> ids = new HashMap<>(names.length * 2);
+        for (int id = 0; id < names.length; id++) {
+            ids.put(names[id], id);
+        }
+        return ids;
+    }
+
+    /**
+     * A test of the indexed report
+     */
+    public static final class IndexedTest {
+        private final String subject;
+        private final String testName;
+        private final Integer verificationCount;
+
+        private IndexedTest(String subject, String testName, Integer verificationCount) {
+            this.subject = subject;
+            this.testName = testName;
+            this.verificationCount = verificationCount;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public String getTestName() {
+            return testName;
+        }
+
+        /***
+         * @return Integer verification count, or null if none was recorded
+         */
+        public Integer getVerificationCount() {
+            return verificationCount;
+        }
+
+        @Override
+        public String toString() {
+            return subject + ": " + testName;
+        }
+    }
+
+    /**
+     * Sorted int postings of each key: values[offsets[key]] up to values[offsets[key + 1]]
+     */
+    private static class Postings {
+        private final int[] offsets;
+        private final int[] values;
+
+        private Postings(int[] offsets, int[] values) {
+            this.offsets = offsets;
+            this.values = values;
+        }
+
+        /***
+         * @param targetCount Number of distinct values
+         * @return Postings of each value to the keys holding it, sorted
+         */
+        private Postings transpose(int targetCount) {
+            int[] transposedOffsets = new int[targetCount + 1];
+            for (int value : values) {
+                transposedOffsets[value + 1]++;
+            }
+            for (int target = 0; target < targetCount; target++) {
+                transposedOffsets[target + 1] += transposedOffsets[target];
+            }
+            int[] next = Arrays.copyOf(transposedOffsets, targetCount);
+            int[] transposedValues = new int[values.length];
+            for (int key = 0; key + 1 < offsets.length; key++) {
+                for (int index = offsets[key]; index < offsets[key + 1]; index++) {
+                    transposedValues[next[values[index]]++] = key;
+                }
+            }
+            return new Postings(transposedOffsets, transposedValues);
+        }
+
+        private <T> List<T> view(Integer key, IntFunction<T> resolve) {
+            return key == null ? Collections.emptyList() : new PostingsView<>(values, offsets[key], offsets[key + 1], resolve);
+        }
+    }
+
+    /**
+     * Unmodifiable list resolving a range of postings on access
+     */
+    private static class PostingsView<T> extends AbstractList<T> implements RandomAccess {
+        private final int[] values;
+        private final int from;
+        private final int size;
+        private final IntFunction<T> resolve;
+
+        private PostingsView(int[] values, int from, int to, IntFunction<T> resolve) {
+            this.values = values;
+            this.from = from;
+            this.size = to - from;
+            this.resolve = resolve;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d", index, size));
+            }
+            return resolve.apply(values[from + index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Growable array of ints
+     */
+    private static class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int get(int index) {
+            return values[index];
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void sort(int from) {
+            Arrays.sort(values, from, size);
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary journal of coverage entries, from which a CoverageReport can be rebuilt after the
+ * process dies.  Each record is its length and CRC32C followed by the EntryCodec encoding.  Records are
+ * buffered and written, then forced to disk, together by a background thread at a fixed interval
+ * (group commit), so an entry costs one encode and one buffer copy.  On replay, a torn record at the
+ * end of the journal (from a crash mid-write) ends the replay.
+ */
+class CoverageJournal implements Closeable {
+    private static final byte[] MAGIC = {'C', '4', 'T', 'J', 1};
+    private static final int RECORD_HEADER_LENGTH = 2 * Integer.BYTES;
+    private static final int BUFFER_CAPACITY = 1 << 16;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_CAPACITY);
+    private final EntryCodec codec = EntryCodec.getInstance();
+    private final CRC32C checksum = new CRC32C();
+    private final ScheduledExecutorService syncer;
+    private volatile IOException syncFailure;
+
+    private CoverageJournal(FileChannel channel, long syncIntervalMillis) {
+        this.channel = channel;
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "coverage4test-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * Open a journal for appending, creating it if it does not exist.  A torn record at the end of an
+     * existing journal is truncated, so that new records follow the last intact one.
+     * @param path Path of the journal file
+     * @param syncIntervalMillis Milliseconds between forcing buffered records to disk
+     * @return CoverageJournal instance
+     * @throws IOException if the file cannot be opened, or is not a journal
+     */
+    static CoverageJournal open(Path path, long syncIntervalMillis) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        try {
+            if (channel.size() == 0) {
+                channel.write(ByteBuffer.wrap(MAGIC));
+            } else {
+                channel.truncate(scan(path, null));
+            }
+            channel.position(channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new CoverageJournal(channel, syncIntervalMillis);
+    }
+
+    /***
+     * Append an entry to the buffer, writing the buffer to the file whenever it fills
+     * @throws IOException if buffered records cannot be written, now or during the last sync
+     */
+    synchronized void append(String testName, String subject, Integer verificationCount, Scenario scenario, long elapsedNanos,
+                             String... requirements) throws IOException {
+        int length = codec.encode(testName, subject, verificationCount, scenario, elapsedNanos, requirements);
+        appendEncoded(codec.getBuffer(), 0, length);
+    }
+
+    /***
+     * Append an entry already encoded by an EntryCodec
+     * @param entry Bytes holding the encoded entry
+     * @param offset Offset of the entry in the bytes
+     * @param length Length of the entry
+     * @throws IOException if buffered records cannot be written, now or during the last sync
+     */
+    synchronized void appendEncoded(byte[] entry, int offset, int length) throws IOException {
+        IOException failure = syncFailure;
+        if (failure != null) {
+            throw failure;
+        }
+        checksum.reset();
+        checksum.update(entry, offset, length);
+        if (buffer.remaining() < RECORD_HEADER_LENGTH + length) {
+            drain();
+        }
+        if (buffer.remaining() < RECORD_HEADER_LENGTH + length) {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + length);
+            record.putInt(length).putInt((int) checksum.getValue()).put(entry, offset, length).flip();
+            write(record);
+            return;
+        }
+        buffer.putInt(length).putInt((int) checksum.getValue()).put(entry, offset, length);
+    }
+
+    /***
+     * Write buffered records and force them to disk.  Appends wait only for the write, not the force.
+     * @throws IOException if the records cannot be written
+     */
+    void sync() throws IOException {
+        synchronized (this) {
+            drain();
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncer.shutdown();
+        try {
+            syncer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /***
+     * Read every intact record of a journal, in order
+     * @param path Path of the journal file
+     * @param sink Receives each entry
+     * @throws IOException if the file cannot be read, or is not a journal
+     */
+    static void replay(Path path, Consumer<CoverageEntry> sink) throws IOException {
+        scan(path, sink);
+    }
+
+    /***
+     * Read the intact records of a journal, stopping at the end of the file or at a torn record: one whose
+     * length is zero or runs past the end of the file, whose checksum does not match, or which does not decode
+     * @param path Path of the journal file
+     * @param sink Receives each entry, or null to only validate the records
+     * @return long length of the journal up to the end of its last intact record
+     * @throws IOException if the file cannot be read, or is not a journal
+     */
+    private static long scan(Path path, Consumer<CoverageEntry> sink) throws IOException {
+        long fileLength = Files.size(path);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path.toFile()), BUFFER_CAPACITY))) {
+            byte[] header = new byte[MAGIC.length];
+            if (in.read(header) != MAGIC.length || !Arrays.equals(header, MAGIC)) {
+                throw new IOException(String.format("%s is not a coverage journal", path));
+            }
+            long validLength = MAGIC.length;
+            CRC32C recordChecksum = new CRC32C();
+            byte[] record = new byte[256];
+            while (true) {
+                int length;
+                int expectedChecksum;
+                try {
+                    length = in.readInt();
+                    expectedChecksum = in.readInt();
+                    if (length <= 0 || length > fileLength - validLength - RECORD_HEADER_LENGTH) {
+                        return validLength;
+                    }
+                    if (record.length < length) {
+                        record = new byte[length];
+                    }
+                    in.readFully(record, 0, length);
+                } catch (EOFException e) {
+                    return validLength;
+                }
+                recordChecksum.reset();
+                recordChecksum.update(record, 0, length);
+                if ((int) recordChecksum.getValue() != expectedChecksum) {
+                    return validLength;
+                }
+                CoverageEntry entry;
+                try {
+                    entry = EntryCodec.decode(ByteBuffer.wrap(record, 0, length));
+                } catch (IllegalArgumentException e) {
+                    return validLength;
+                }
+                if (sink != null) {
+                    sink.accept(entry);
+                }
+                validLength += RECORD_HEADER_LENGTH + length;
+            }
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            syncFailure = e;
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer records) throws IOException {
+        while (records.hasRemaining()) {
+            channel.write(records);
+        }
+    }
+}
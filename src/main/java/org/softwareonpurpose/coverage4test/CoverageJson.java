@@ -0,0 +1,134 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.SortedSet;
+
+/**
+ * Hand-written streaming writers for the report elements, so that rendering writes straight to the output
+ * without reflection or intermediate JsonElement trees; the JSON matches what Gson would produce, HTML-safe
+ */
+final class CoverageJson {
+    private static final String NULL_JSON = "null";
+
+    private CoverageJson() {
+    }
+
+    /***
+     * @param test ExecutedTest to render
+     * @return String JSON of the test
+     */
+    static String toJson(ExecutedTest test) {
+        StringWriter json = new StringWriter();
+        try {
+            writeTest(newJsonWriter(json), test);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return json.toString();
+    }
+
+    /***
+     * @param scenario Scenario to render
+     * @return String JSON of the scenario
+     */
+    static String toJson(Scenario scenario) {
+        StringWriter json = new StringWriter();
+        try {
+            writeScenario(newJsonWriter(json), scenario, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return json.toString();
+    }
+
+    /***
+     * Write an ExecutedTest to a JsonWriter, HTML-safe
+     * @param out JsonWriter to which the test is written
+     * @param test ExecutedTest to write
+     * @throws IOException if the test cannot be written
+     */
+    static void writeTest(JsonWriter out, ExecutedTest test) throws IOException {
+        boolean htmlSafe = out.isHtmlSafe();
+        out.setHtmlSafe(true);
+        try {
+            write(out, test);
+        } finally {
+            out.setHtmlSafe(htmlSafe);
+        }
+    }
+
+    private static JsonWriter newJsonWriter(StringWriter json) {
+        JsonWriter out = new JsonWriter(json);
+        out.setSerializeNulls(false);
+        return out;
+    }
+
+    private static void write(JsonWriter out, ExecutedTest test) throws IOException {
+        if (test == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("test").value(test.getTestName());
+        Integer verificationCount = test.getVerificationCount();
+        if (verificationCount != null) {
+            out.name("verificationCount").value(verificationCount);
+        }
+        SortedSet<Scenario> scenarios = test.getRecordedScenarios();
+        LatencyHistogram timing = test.getTiming();
+        if (scenarios != null) {
+            out.name("scenarios").beginArray();
+            for (Scenario scenario : scenarios) {
+                writeScenario(out, scenario, timing == null ? null : test.getTiming(scenario));
+            }
+            out.endArray();
+        }
+        ScenarioSample sample = test.getScenarioSample();
+        if (sample != null) {
+            out.name("scenarioSample").beginObject();
+            out.name("limit").value(sample.getLimit());
+            out.name("occurrences").value(sample.getOccurrences());
+            out.name("distinct").value(sample.getDistinctCount());
+            out.endObject();
+        }
+        if (timing != null) {
+            out.name("timing");
+            timing.writeTo(out);
+        }
+        out.endObject();
+    }
+
+    private static void writeScenario(JsonWriter out, Scenario scenario, LatencyHistogram timing) throws IOException {
+        if (scenario == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        String canonical = scenario.getCanonical();
+        if (!NULL_JSON.equals(canonical)) {
+            out.name("scenario").jsonValue(canonical);
+        }
+        if (timing != null) {
+            out.name("timing");
+            timing.writeTo(out);
+        }
+        out.endObject();
+    }
+}
@@ -0,0 +1,109 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * One test as read from a JSON or binary report: the requirement it is listed under (requirements coverage
+ * only), its subject, name, verification count and scenarios, and, from a binary report, its timing
+ */
+class CoverageRecord {
+    static final Comparator<CoverageRecord> REPORT_ORDER =
+            Comparator.comparing(CoverageRecord::getRequirement, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                    .thenComparing(CoverageRecord::getSubject)
+                    .thenComparing(CoverageRecord::getTestName);
+    private final String requirement;
+    private final String subject;
+    private final String testName;
+    private final Integer verificationCount;
+    private final List<Scenario> scenarios;
+    private final LatencyHistogram timing;
+    private final List<LatencyHistogram> scenarioTimings;
+
+    private CoverageRecord(String requirement, String subject, String testName, Integer verificationCount, List<Scenario> scenarios,
+                           LatencyHistogram timing, List<LatencyHistogram> scenarioTimings) {
+        this.requirement = requirement;
+        this.subject = subject;
+        this.testName = testName;
+        this.verificationCount = verificationCount;
+        this.scenarios = scenarios;
+        this.timing = timing;
+        this.scenarioTimings = scenarioTimings;
+    }
+
+    /***
+     * @param requirement Requirement the test is listed under, or null for system coverage
+     * @param subject Subject of the test
+     * @param testName Name of the test
+     * @param verificationCount Verification count, or null
+     * @param scenarios Scenarios in report order, or null when the report has none for the test
+     * @return CoverageRecord instance
+     */
+    static CoverageRecord getInstance(String requirement, String subject, String testName, Integer verificationCount,
+                                      List<Scenario> scenarios) {
+        return new CoverageRecord(requirement, subject, testName, verificationCount, scenarios, null, null);
+    }
+
+    /***
+     * @param subject Subject of the test
+     * @param testName Name of the test
+     * @param verificationCount Verification count, or null
+     * @param scenarios Scenarios in report order, or null when the report has none for the test
+     * @param timing LatencyHistogram of the test's timed executions, or null if none were timed
+     * @param scenarioTimings LatencyHistogram of each scenario (null if untimed), in the order of scenarios
+     * @return CoverageRecord instance of system coverage
+     */
+    static CoverageRecord getTimedInstance(String subject, String testName, Integer verificationCount, List<Scenario> scenarios,
+                                           LatencyHistogram timing, List<LatencyHistogram> scenarioTimings) {
+        return new CoverageRecord(null, subject, testName, verificationCount, scenarios, timing, scenarioTimings);
+    }
+
+    String getRequirement() {
+        return requirement;
+    }
+
+    String getSubject() {
+        return subject;
+    }
+
+    String getTestName() {
+        return testName;
+    }
+
+    Integer getVerificationCount() {
+        return verificationCount;
+    }
+
+    List<Scenario> getScenarios() {
+        return scenarios;
+    }
+
+    LatencyHistogram getTiming() {
+        return timing;
+    }
+
+    List<LatencyHistogram> getScenarioTimings() {
+        return scenarioTimings;
+    }
+
+    /***
+     * @param comparator Another record
+     * @return boolean whether both records are the same test listed under the same requirement
+     */
+    boolean isSameTest(CoverageRecord comparator) {
+        return REPORT_ORDER.compare(this, comparator) == 0;
+    }
+}
@@ -13,21 +13,77 @@
    limitations under the License.*/
 package org.softwareonpurpose.coverage4test;
 
+import com.google.gson.stream.JsonWriter;
+
+import javax.management.JMException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPOutputStream;
 
 /***
  * CoverageReport accepts entries for each test executed, including each test, scenarios executed,
- * and requirements covered.  Instantiated with the filename to which the compiled report is to be written.
+ * and requirements covered.  Instantiated by one of the get*Instance methods, or read back by load, collect
+ * or replay; the compiled report is rendered as JSON (e.g. writeTo) or binary (writeBinaryTo).
  */
 @SuppressWarnings("WeakerAccess")
-public class CoverageReport {
-    private static final String COVERAGE_ELEMENT_NAME = "coverage";
-    private static final String COVERAGE_TYPE_SYSTEM = "system";
-    private static final String COVERAGE_TYPE_REQUIREMENTS = "requirements";
-    private final SortedSet<ExecutedTest> systemCoverage = new TreeSet<>();
-    private final transient Map<String, SortedSet<ExecutedTest>> requirementsCoverage = new TreeMap<>();
+public class CoverageReport implements AutoCloseable {
+    static final String COVERAGE_ELEMENT_NAME = "coverage";
+    static final String COVERAGE_TYPE_SYSTEM = "system";
+    static final String COVERAGE_TYPE_REQUIREMENTS = "requirements";
+    private static final long JOURNAL_SYNC_INTERVAL_MILLIS = 100;
+    private static final long CLIENT_SEND_TIMEOUT_MILLIS = 5_000;
+    private static final int BINARY_BUFFER_CAPACITY = 1 << 16;
+    private static final long COLLECTOR_CAPACITY = 1L << 30;
+    private static final long UNTIMED = CoverageEntry.UNTIMED;
+    private static final int PARALLEL_RENDER_BATCHES_PER_PROCESSOR = 4;
+    private static final int PARALLEL_RENDER_MAX_BATCH = 64;
+    private final boolean concurrent;
+    private final SortedMap<String, SubjectCoverage> systemCoverage;
+    private final transient Map<String, SubjectCoverage> testIndex;
+    private final transient RequirementsIndex requirementsCoverage;
+    private final transient ScenarioPool scenarioPool;
+    private final transient CoverageReportMetrics metrics;
+    private final transient Object registrationLock = new Object();
+    private volatile ExecutedTest[] testsById = new ExecutedTest[64];
+    private int registeredTestCount;
+    private final transient ReentrantReadWriteLock spillLock = new ReentrantReadWriteLock();
+    private volatile SpilledRuns spillRuns;
+    private volatile int generation;
+    private final transient AsyncAggregator aggregator;
+    private volatile CoverageJournal journal;
+    private volatile EntrySink entrySink;
+    private volatile boolean testDataCaptured;
+    private volatile boolean fragmentsCached;
+    private volatile Executor renderExecutor;
+    private volatile int scenarioCap;
+    private final transient Map<String, Integer> subjectScenarioCaps = new ConcurrentHashMap<>();
 
-    private CoverageReport() {
+    private CoverageReport(boolean concurrent, int queueCapacity, BackpressurePolicy backpressure) {
+        this.concurrent = concurrent;
+        this.systemCoverage = concurrent ? new ConcurrentSkipListMap<>() : new TreeMap<>();
+        this.testIndex = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.requirementsCoverage = RequirementsIndex.getInstance(concurrent, this::getTest);
+        this.scenarioPool = ScenarioPool.getInstance(concurrent);
+        this.metrics = CoverageReportMetrics.getInstance(this::getRegisteredTestCount, scenarioPool, requirementsCoverage);
+        this.aggregator = backpressure == null ? null : AsyncAggregator.start(queueCapacity, backpressure, this::ingestQueued);
     }
 
     /***
@@ -35,72 +91,850 @@ public class CoverageReport {
      * @return CoverageReport instance
      */
     public static CoverageReport getInstance() {
-        return new CoverageReport();
+        return new CoverageReport(false, 0, null);
+    }
+
+    /***
+     * Get an instance of CoverageReport which accepts entries from multiple threads at once
+     * (e.g. TestNG parallel methods) without external locking.  Tests are indexed in concurrent maps
+     * and each ExecutedTest guards its own scenarios, so threads recording different tests do not contend.
+     * @return CoverageReport instance safe for concurrent entries
+     */
+    public static CoverageReport getConcurrentInstance() {
+        return new CoverageReport(true, 0, null);
+    }
+
+    /***
+     * Get an instance of CoverageReport which records entries asynchronously: addTestEntry only queues the
+     * entry, and a background thread ingests queued entries in batches.  Test data must not be modified
+     * after it is recorded.  Reports and counts wait for queued entries; close() the report when done.
+     * @param queueCapacity Number of entries queued before the backpressure policy applies
+     * @param backpressure What to do with an entry when the queue is full
+     * @return CoverageReport instance ingesting entries on a background thread
+     */
+    public static CoverageReport getAsyncInstance(int queueCapacity, BackpressurePolicy backpressure) {
+        return new CoverageReport(true, queueCapacity, Objects.requireNonNull(backpressure));
     }
 
     public void addTestEntry(String testName, String testSubject) {
-        addTest(testName, testSubject, null, null, (String) null);
+        addTest(testName, testSubject, null, null, UNTIMED, (String) null);
     }
 
     public void addTestEntry(String testName, String feature, Object testData) {
-        addTest(testName, feature, null, testData, (String) null);
+        addTest(testName, feature, null, testData, UNTIMED, (String) null);
     }
 
     public void addTestEntry(String testName, String feature, Integer verificationCount, Object testData, String... requirements) {
-        addTest(testName, feature, verificationCount, testData, requirements);
+        addTest(testName, feature, verificationCount, testData, UNTIMED, requirements);
     }
 
     public void addRequirementTestEntry(String testName, String testSubject, String... requirements) {
-        addTest(testName, testSubject, null, null, requirements);
+        addTest(testName, testSubject, null, null, UNTIMED, requirements);
     }
 
     public void addRequirementTestEntry(String testName, String testSubject, Object testData, String... requirements) {
-        addTest(testName, testSubject, null, testData, requirements);
+        addTest(testName, testSubject, null, testData, UNTIMED, requirements);
+    }
+
+    /***
+     * Add an entry for one timed execution of a test.  Elapsed times are summarized per test and per
+     * scenario (count, p50, p99 and max) in the "timing" element of System Coverage.
+     * @param testName Name of the test
+     * @param testSubject Subject of the test
+     * @param elapsedNanos Elapsed time of the execution, in nanoseconds (e.g. a System.nanoTime() difference)
+     * @param testData Test data of the scenario executed, or null
+     */
+    public void addTimedTestEntry(String testName, String testSubject, long elapsedNanos, Object testData) {
+        addTimedTestEntry(testName, testSubject, elapsedNanos, null, testData, (String) null);
+    }
+
+    /***
+     * Add an entry for one timed execution of a test; see addTimedTestEntry(String, String, long, Object)
+     * @param testName Name of the test
+     * @param testSubject Subject of the test
+     * @param elapsedNanos Elapsed time of the execution, in nanoseconds
+     * @param verificationCount Verification count, or null
+     * @param testData Test data of the scenario executed, or null
+     * @param requirements Requirements covered by the test
+     */
+    public void addTimedTestEntry(String testName, String testSubject, long elapsedNanos, Integer verificationCount,
+                                  Object testData, String... requirements) {
+        if (elapsedNanos < 0) {
+            throw new IllegalArgumentException(String.format("Elapsed time of %s is negative: %d", testName, elapsedNanos));
+        }
+        addTest(testName, testSubject, verificationCount, testData, elapsedNanos, requirements);
+    }
+
+    /***
+     * Get a handle for recording many executions of one test (e.g. the rows of a data provider).  Recording
+     * through a handle is equivalent to adding entries for the test; once its first entry is ingested, the
+     * handle holds the test and its requirement links, and records later executions straight into the test
+     * without looking it up or re-linking its requirements.
+     * @param testSubject Subject of the test
+     * @param testName Name of the test
+     * @param requirements Requirements covered by the test
+     * @return TestHandle of the test
+     */
+    public TestHandle test(String testSubject, String testName, String... requirements) {
+        return TestHandle.getInstance(this, testSubject, testName, requirements);
     }
 
-    private void addTest(String testName, String feature, Integer verificationCount, Object testData, String... requirements) {
-        ExecutedTest test = getTestInstance(testName, feature, verificationCount, testData);
+    /***
+     * Record one execution of the test of a handle
+     * @param handle TestHandle of this report
+     * @param verificationCount Verification count, or null
+     * @param testData Test data of the scenario executed, or null
+     * @param elapsedNanos Elapsed time of the execution, or UNTIMED
+     */
+    void record(TestHandle handle, Integer verificationCount, Object testData, long elapsedNanos) {
+        if (entrySink != null || aggregator != null || journal != null) {
+            addTest(handle.getTestName(), handle.getSubject(), verificationCount, testData, elapsedNanos, handle.getRequirements());
+            return;
+        }
+        metrics.recordEntry();
+        Scenario scenario = testData == null ? null : serialize(testData);
+        SpilledRuns runs = spillRuns;
+        if (runs == null) {
+            record(handle, verificationCount, scenario, elapsedNanos);
+            return;
+        }
+        Lock lock = spillLock.readLock();
+        lock.lock();
+        try {
+            record(handle, verificationCount, scenario, elapsedNanos);
+        } finally {
+            lock.unlock();
+        }
+        checkMemoryCeiling(runs);
+    }
+
+    /***
+     * Record an execution straight into the handle's test, unless the test is yet to be resolved in the
+     * current generation of the report's tests
+     */
+    private void record(TestHandle handle, Integer verificationCount, Scenario scenario, long elapsedNanos) {
+        int current = generation;
+        ExecutedTest test = handle.getTest(current);
+        if (test == null) {
+            handle.setTest(ingestEntry(handle.getTestName(), handle.getSubject(), verificationCount, scenario, elapsedNanos,
+                    true, handle.getRequirements()), current);
+            return;
+        }
+        addExecution(test, scenario, elapsedNanos);
+        metrics.recordRequirements(handle.getRequirementCount(), 0);
+    }
+
+    /***
+     * @return ExecutedTest of the entry, if it was ingested directly rather than queued or sent elsewhere
+     */
+    private ExecutedTest addTest(String testName, String feature, Integer verificationCount, Object testData, long elapsedNanos,
+                                 String... requirements) {
+        metrics.recordEntry();
+        EntrySink sink = entrySink;
+        if (sink != null) {
+            Scenario scenario = testData == null ? null : serialize(testData);
+            sink.append(testName, feature, verificationCount, scenario, elapsedNanos, requirements);
+            return null;
+        }
+        CoverageJournal currentJournal = journal;
+        boolean captured = testDataCaptured;
+        if (aggregator != null && !captured && currentJournal == null
+                && aggregator.submit(CoverageEntry.getInstance(testName, feature, verificationCount, testData, elapsedNanos, requirements))) {
+            return null;
+        }
+        Scenario scenario = testData == null ? null : serialize(testData);
+        if (currentJournal != null) {
+            append(currentJournal, testName, feature, verificationCount, scenario, elapsedNanos, requirements);
+        }
+        if (aggregator != null && (captured || currentJournal != null)
+                && aggregator.submit(CoverageEntry.getRecordedInstance(testName, feature, verificationCount, scenario, elapsedNanos,
+                requirements))) {
+            return null;
+        }
+        return ingest(testName, feature, verificationCount, scenario, elapsedNanos, false, requirements);
+    }
+
+    private static void append(CoverageJournal journal, String testName, String feature, Integer verificationCount, Scenario scenario,
+                               long elapsedNanos, String... requirements) {
+        if (testName == null || testName.isBlank() || feature == null || feature.isBlank()) {
+            return;
+        }
+        try {
+            journal.append(testName, feature, verificationCount, scenario, elapsedNanos, requirements);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /***
+     * @return Scenario holding the JSON of the test data only, so the report does not keep the object reachable
+     */
+    private Scenario serialize(Object testData) {
+        long start = System.nanoTime();
+        Scenario scenario = Scenario.getCapturedInstance(testData);
+        metrics.recordSerialization(System.nanoTime() - start);
+        return scenario;
+    }
+
+    void ingest(CoverageEntry entry) {
+        ingest(entry, true);
+    }
+
+    /***
+     * Ingest an entry queued by addTest, which journaled it, if need be, before queueing it
+     */
+    private void ingestQueued(CoverageEntry entry) {
+        ingest(entry, false);
+    }
+
+    private void ingest(CoverageEntry entry, boolean journaling) {
+        Scenario scenario;
+        if (entry.hasTestData()) {
+            long start = System.nanoTime();
+            scenario = entry.getScenario();
+            metrics.recordSerialization(System.nanoTime() - start);
+        } else {
+            scenario = entry.getScenario();
+        }
+        ingest(entry.getTestName(), entry.getSubject(), entry.getVerificationCount(), scenario, entry.getElapsedNanos(), journaling,
+                entry.getRequirements());
+    }
+
+    private ExecutedTest ingest(String testName, String feature, Integer verificationCount, Scenario scenario, long elapsedNanos,
+                                boolean journaling, String... requirements) {
+        SpilledRuns runs = spillRuns;
+        if (runs == null) {
+            return ingestEntry(testName, feature, verificationCount, scenario, elapsedNanos, journaling, requirements);
+        }
+        ExecutedTest test;
+        Lock lock = spillLock.readLock();
+        lock.lock();
+        try {
+            test = ingestEntry(testName, feature, verificationCount, scenario, elapsedNanos, journaling, requirements);
+        } finally {
+            lock.unlock();
+        }
+        checkMemoryCeiling(runs);
+        return test;
+    }
+
+    private ExecutedTest ingestEntry(String testName, String feature, Integer verificationCount, Scenario scenario,
+                                     long elapsedNanos, boolean journaling, String... requirements) {
+        ExecutedTest test = getTestInstance(testName, feature, verificationCount, scenario, elapsedNanos);
         if (test != null) {
-            systemCoverage.add(test);
+            int references = 0;
+            int links = 0;
             if (requirements != null) {
                 for (String requirement : requirements) {
                     if (requirement != null && !requirement.isBlank()) {
-                        SortedSet<ExecutedTest> existingRequirementTests = null;
-                        for (Map.Entry<String, SortedSet<ExecutedTest>> existingRequirement : requirementsCoverage.entrySet()) {
-                            if (existingRequirement.getKey().equals(requirement)) {
-                                existingRequirementTests = existingRequirement.getValue();
-                                break;
-                            }
-                        }
-                        if (existingRequirementTests != null) {
-                            existingRequirementTests.add(test);
-                        } else {
-                            requirementsCoverage.put(requirement, new TreeSet<>(List.of(test)));
-                        }
+                        references++;
+                        links += requirementsCoverage.link(requirement, test) ? 1 : 0;
                     }
                 }
             }
+            metrics.recordRequirements(references, links);
+            CoverageJournal currentJournal = journal;
+            if (journaling && currentJournal != null) {
+                append(currentJournal, testName, feature, verificationCount, scenario, elapsedNanos, requirements);
+            }
         }
+        return test;
     }
 
-    private ExecutedTest getTestInstance(String testName, String feature, Integer verificationCount, Object testData) {
-        Scenario scenario = testData == null ? null : Scenario.getInstance(testData);
-        ExecutedTest test = ExecutedTest.getInstance(testName, feature, verificationCount, scenario);
-        for (ExecutedTest candidate : systemCoverage) {
-            if (candidate.equals(test)) {
-                candidate.addScenario(scenario);
-                test = candidate;
+    private ExecutedTest getTestInstance(String testName, String feature, Integer verificationCount, Scenario scenario,
+                                         long elapsedNanos) {
+        ExecutedTest test = findTest(feature, testName);
+        if (test == null) {
+            ExecutedTest candidate = ExecutedTest.getInstance(testName, feature, verificationCount, null);
+            if (candidate == null) {
+                return null;
+            }
+            int cap = subjectScenarioCaps.getOrDefault(feature, scenarioCap);
+            if (cap > 0) {
+                candidate.capScenarios(cap);
             }
+            test = getSubject(feature).computeIfAbsent(testName, name -> register(candidate));
         }
+        addExecution(test, scenario, elapsedNanos);
         return test;
     }
 
+    private void addExecution(ExecutedTest test, Scenario scenario, long elapsedNanos) {
+        Scenario pooled = scenario == null || test.admitsScenario(scenario) ? scenarioPool.intern(scenario) : scenario;
+        boolean changed = false;
+        if (pooled != null) {
+            changed = test.addScenario(pooled);
+            metrics.recordTestScenario(changed);
+            changed |= test.getScenarioSample() != null;
+        }
+        if (elapsedNanos != UNTIMED) {
+            test.recordElapsed(pooled, elapsedNanos);
+            changed = true;
+        }
+        if (changed) {
+            test.invalidateFragments();
+        }
+    }
+
+    /***
+     * Assign the next int id to a new test, so that requirements can refer to it compactly
+     * @param test ExecutedTest new to this report
+     * @return ExecutedTest registered
+     */
+    private ExecutedTest register(ExecutedTest test) {
+        synchronized (registrationLock) {
+            ExecutedTest[] tests = testsById;
+            if (registeredTestCount == tests.length) {
+                tests = Arrays.copyOf(tests, tests.length * 2);
+            }
+            test.setId(registeredTestCount);
+            tests[registeredTestCount++] = test;
+            metrics.recordTest(test);
+            testsById = tests;
+        }
+        return test;
+    }
+
+    private long getRegisteredTestCount() {
+        synchronized (registrationLock) {
+            return registeredTestCount;
+        }
+    }
+
+    private ExecutedTest getTest(int id) {
+        return testsById[id];
+    }
+
+    private ExecutedTest findTest(String subject, String testName) {
+        if (subject == null || testName == null) {
+            return null;
+        }
+        SubjectCoverage subjectTests = testIndex.get(subject);
+        return subjectTests == null ? null : subjectTests.get(testName);
+    }
+
+    private SubjectCoverage getSubject(String subject) {
+        SubjectCoverage subjectTests = testIndex.get(subject);
+        if (subjectTests == null) {
+            subjectTests = testIndex.computeIfAbsent(subject, name -> SubjectCoverage.getInstance(name, concurrent));
+            systemCoverage.putIfAbsent(subject, subjectTests);
+        }
+        return subjectTests;
+    }
+
+    /***
+     * Spill the report once the estimated heap it retains (see CoverageReportMetrics.getEstimatedRetainedBytes,
+     * checked every 256 entries) reaches a ceiling: its tests, in report order, are written to a run file in
+     * the directory and released, and later entries start a new run.  Rendering merges the runs, together
+     * with the entries still held, into the same report as if every entry had been held.  Once the report
+     * has spilled, counts and metrics cover only the entries still held, and getIndex(), writeBinaryTo and
+     * RequirementCatalog.getCoverage are unavailable.  The ceiling applies to the estimate of
+     * CoverageReportMetrics.getEstimatedRetainedBytes, which approximates, not measures, the heap retained.
+     * Beyond 64 runs, rendering first merges them in a cascade so as to keep at most 64 run files open.  close() deletes the run files and discards the entries
+     * they hold, so render the report before closing it.
+     * @param directory Directory in which to create run files
+     * @param memoryCeilingBytes Estimated retained bytes at which the report is spilled
+     * @return This CoverageReport
+     * @throws IOException if the directory cannot be created
+     */
+    public CoverageReport spillTo(Path directory, long memoryCeilingBytes) throws IOException {
+        if (memoryCeilingBytes <= 0) {
+            throw new IllegalArgumentException(String.format("Memory ceiling is not positive: %d", memoryCeilingBytes));
+        }
+        if (spillRuns != null) {
+            throw new IllegalStateException("Report already spills to run files");
+        }
+        if (scenarioCap > 0 || !subjectScenarioCaps.isEmpty()) {
+            throw new IllegalStateException("Report with capped scenarios cannot spill to run files");
+        }
+        Files.createDirectories(directory);
+        spillRuns = SpilledRuns.getInstance(directory, memoryCeilingBytes);
+        return this;
+    }
+
+    /***
+     * Hold at most a number of scenarios for each test recorded from now on, keeping a deterministic sample of
+     * its distinct scenarios (those of least hash, whatever the order they are recorded in), for tests
+     * recording more distinct scenarios than a report can usefully list (e.g. property-based or fuzz tests).
+     * System Coverage then adds a "scenarioSample" element to each capped test: the limit, the count of
+     * scenario occurrences recorded, and the count of distinct scenarios, which is exact until the test
+     * drops a scenario and then estimated within a few percent.  Scenario timings cover the sampled
+     * scenarios.  Loaded, merged and binary reports keep the sampled scenarios, but not the counts.
+     * @param maxScenariosPerTest Most scenarios held by a test, at least 1
+     * @return This CoverageReport
+     */
+    public CoverageReport capScenarios(int maxScenariosPerTest) {
+        scenarioCap = checkScenarioCap(maxScenariosPerTest);
+        return this;
+    }
+
+    /***
+     * Hold at most a number of scenarios for each test of a subject recorded from now on, instead of any
+     * cap of the report; see capScenarios(int)
+     * @param testSubject Subject of the tests
+     * @param maxScenariosPerTest Most scenarios held by a test, at least 1
+     * @return This CoverageReport
+     */
+    public CoverageReport capScenarios(String testSubject, int maxScenariosPerTest) {
+        subjectScenarioCaps.put(Objects.requireNonNull(testSubject), checkScenarioCap(maxScenariosPerTest));
+        return this;
+    }
+
+    private int checkScenarioCap(int maxScenariosPerTest) {
+        if (maxScenariosPerTest < 1) {
+            throw new IllegalArgumentException(String.format("Scenario cap is less than 1: %d", maxScenariosPerTest));
+        }
+        if (spillRuns != null) {
+            throw new IllegalStateException("Report spilling to run files cannot cap scenarios");
+        }
+        return maxScenariosPerTest;
+    }
+
+    private void checkMemoryCeiling(SpilledRuns runs) {
+        if (!runs.isCheckDue() || metrics.getEstimatedRetainedBytes() < runs.getMemoryCeiling()) {
+            return;
+        }
+        Lock lock = spillLock.writeLock();
+        lock.lock();
+        try {
+            if (metrics.getEstimatedRetainedBytes() >= runs.getMemoryCeiling()) {
+                spill(runs);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * Write every test and requirement link to a run, then release them; the write lock must be held
+     */
+    private void spill(SpilledRuns runs) throws IOException {
+        runs.write(systemCoverage, requirementsCoverage.getRequirements(), this::getTest);
+        systemCoverage.clear();
+        testIndex.clear();
+        requirementsCoverage.clear();
+        scenarioPool.clear();
+        synchronized (registrationLock) {
+            testsById = new ExecutedTest[64];
+            registeredTestCount = 0;
+        }
+        generation++;
+        metrics.recordSpill();
+    }
+
+    /***
+     * @return CoverageReportMerger of every run, after spilling the entries still held, or null if the
+     * report does not spill
+     */
+    private CoverageReportMerger mergeSpilledRuns() throws IOException {
+        SpilledRuns runs = spillRuns;
+        if (runs == null) {
+            return null;
+        }
+        Lock lock = spillLock.writeLock();
+        lock.lock();
+        try {
+            if (getRegisteredTestCount() > 0) {
+                spill(runs);
+            }
+            runs.compact();
+            return CoverageReportMerger.getSourceInstance(runs.getSources());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void requireUnspilled() {
+        SpilledRuns runs = spillRuns;
+        if (runs != null && runs.hasRuns()) {
+            throw new IllegalStateException("Report has spilled entries to run files");
+        }
+    }
+
     public int getSystemCoverageCount() {
-        return systemCoverage.size();
+        flush();
+        return (int) getRegisteredTestCount();
     }
 
     public int getTestCount() {
-        return systemCoverage.size();
+        flush();
+        return (int) getRegisteredTestCount();
+    }
+
+    /***
+     * Capture the test data of every entry recorded from now on as its JSON on the recording thread, rather
+     * than when an asynchronous report ingests the queued entry, so that queued entries do not keep large
+     * fixtures reachable, and test data may change once recorded.  Every report keeps only the JSON of
+     * ingested test data; reports are unchanged.
+     * @return This CoverageReport
+     */
+    public CoverageReport captureTestData() {
+        testDataCaptured = true;
+        return this;
+    }
+
+    /***
+     * Keep the rendered JSON of each subject and requirement between reports, so that rendering the report
+     * again (e.g. to publish progress during a long run) only re-renders subjects and requirements whose
+     * tests changed since.  Output is unchanged; the cached JSON is held in addition to the report.
+     * @return This CoverageReport
+     */
+    public CoverageReport cacheRenderedFragments() {
+        fragmentsCached = true;
+        return this;
+    }
+
+    /***
+     * Render subjects and requirements in parallel on the common ForkJoinPool; see renderInParallel(Executor)
+     * @return This CoverageReport
+     */
+    public CoverageReport renderInParallel() {
+        return renderInParallel(ForkJoinPool.commonPool());
+    }
+
+    /***
+     * Render each subject and each requirement as an independent fragment on the executor, and write the
+     * fragments in report order as they complete.  Output is identical to sequential rendering; at most
+     * a few batches of fragments per processor are held in memory at once.  Fragments cost an extra copy,
+     * so on a single processor sequential rendering is faster.
+     * @param executor Executor rendering fragments
+     * @return This CoverageReport
+     */
+    public CoverageReport renderInParallel(Executor executor) {
+        renderExecutor = Objects.requireNonNull(executor);
+        return this;
+    }
+
+    /***
+     * Append every entry ingested from now on to a crash-safe binary journal, so that the report can be
+     * rebuilt with replay(Path) if the test run dies before the report is written.  Buffered entries are
+     * forced to disk every 100 milliseconds and on close().  An existing journal is appended to.  An asynchronous
+     * report journals each entry on the recording thread before queueing it, so queued entries survive a crash;
+     * its test data is then serialized on that thread.
+     * @param path Path of the journal file
+     * @return This CoverageReport
+     * @throws IOException if the journal cannot be opened
+     */
+    public CoverageReport journalTo(Path path) throws IOException {
+        CoverageJournal opened = CoverageJournal.open(path, JOURNAL_SYNC_INTERVAL_MILLIS);
+        CoverageJournal previous = journal;
+        journal = opened;
+        if (previous != null) {
+            previous.close();
+        }
+        return this;
+    }
+
+    /***
+     * Get an instance of CoverageReport which appends every entry to a collection file shared by the test
+     * JVMs (e.g. Gradle forks) on this host, rather than holding it.  Entries from all forks are read into
+     * one report with collect(Path), during or after the run, so forks need not write reports to be merged.
+     * The collection is created, sparse, with a capacity of 1 GiB; entries beyond it are dropped.
+     * @param path Path of the collection file, the same for every fork
+     * @return CoverageReport instance appending entries to the collection; close() it when done
+     * @throws IOException if the collection cannot be created or opened
+     */
+    public static CoverageReport getCollectorInstance(Path path) throws IOException {
+        return getCollectorInstance(path, COLLECTOR_CAPACITY);
+    }
+
+    /***
+     * Get an instance of CoverageReport appending every entry to a shared collection file; see
+     * getCollectorInstance(Path)
+     * @param path Path of the collection file, the same for every fork
+     * @param capacity Bytes of the collection when it is created, up to 2 GiB
+     * @return CoverageReport instance appending entries to the collection; close() it when done
+     * @throws IOException if the collection cannot be created or opened
+     */
+    public static CoverageReport getCollectorInstance(Path path, long capacity) throws IOException {
+        CoverageReport report = new CoverageReport(true, 0, null);
+        report.entrySink = MappedCoverageCollector.open(path, capacity);
+        return report;
+    }
+
+    /***
+     * Get an instance of CoverageReport which sends every entry to a CoverageCollectorServer, rather than
+     * holding it.  Entries are batched, and sent at least every 100 milliseconds and on close().  If the
+     * server cannot be reached, or stops responding (accepts nothing of a batch for 5 seconds), entries are
+     * journaled to the fallback file instead, until a reconnect succeeds; the server (or replay(Path))
+     * recovers them from it.
+     * @param address UnixDomainSocketAddress or loopback InetSocketAddress of the server
+     * @param fallback Path of the journal to write entries to when the server cannot be reached
+     * @return CoverageReport instance sending entries to the server; close() it when done
+     */
+    public static CoverageReport getClientInstance(SocketAddress address, Path fallback) {
+        CoverageReport report = new CoverageReport(true, 0, null);
+        report.entrySink = CoverageClient.connect(address, fallback, JOURNAL_SYNC_INTERVAL_MILLIS, CLIENT_SEND_TIMEOUT_MILLIS);
+        return report;
+    }
+
+    /***
+     * Build a CoverageReport from every entry appended so far to a collection shared by test JVMs
+     * @param path Path of the collection file written by getCollectorInstance(Path) reports
+     * @return CoverageReport instance holding every entry in the collection
+     * @throws IOException if the collection cannot be read
+     */
+    public static CoverageReport collect(Path path) throws IOException {
+        CoverageReport report = getInstance();
+        MappedCoverageCollector.read(path, report::ingest);
+        return report;
+    }
+
+    /***
+     * Rebuild a CoverageReport from a journal written by a report configured with journalTo(Path)
+     * @param path Path of the journal file
+     * @return CoverageReport instance holding every entry in the journal
+     * @throws IOException if the journal cannot be read
+     */
+    public static CoverageReport replay(Path path) throws IOException {
+        CoverageReport report = getInstance();
+        CoverageJournal.replay(path, report::ingest);
+        return report;
+    }
+
+    /***
+     * Rebuild a CoverageReport from a JSON report written by toString()/writeTo, getSystemCoverage() or
+     * getRequirementsCoverage(), so that it can be extended with new entries.  The report is streamed, and
+     * its tests and requirements are registered directly, in time linear in the size of the report.
+     * @param reader Reader of the JSON report; read to the end of the report, but not closed
+     * @return CoverageReport instance holding every test, scenario and requirement in the report
+     * @throws IOException if the report cannot be read, or is not a coverage report
+     */
+    public static CoverageReport load(Reader reader) throws IOException {
+        return load(reader, "report");
+    }
+
+    /***
+     * Rebuild a CoverageReport from a UTF-8 JSON report file; see load(Reader)
+     * @param path Path of the JSON report
+     * @return CoverageReport instance holding every test, scenario and requirement in the report
+     * @throws IOException if the report cannot be read, or is not a coverage report
+     */
+    public static CoverageReport load(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return load(reader, path.toString());
+        }
+    }
+
+    /***
+     * Rebuild a CoverageReport from a report written by writeBinaryTo, compressed or not
+     * @param in InputStream of the binary report; read to the end of the report, but not closed
+     * @return CoverageReport instance holding every test, scenario, timing and requirement in the report
+     * @throws IOException if the report cannot be read, or is not a binary coverage report
+     */
+    public static CoverageReport loadBinary(InputStream in) throws IOException {
+        CoverageReport report = getInstance();
+        BinaryReportCodec.read(in, report::ingest);
+        return report;
+    }
+
+    /***
+     * Rebuild a CoverageReport from a binary report file; see loadBinary(InputStream)
+     * @param path Path of the binary report
+     * @return CoverageReport instance holding every test, scenario, timing and requirement in the report
+     * @throws IOException if the report cannot be read, or is not a binary coverage report
+     */
+    public static CoverageReport loadBinary(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return loadBinary(in);
+        }
+    }
+
+    private static CoverageReport load(Reader reader, String source) throws IOException {
+        CoverageReport report = getInstance();
+        ReportCursor cursor = ReportCursor.open(reader, source, null);
+        CoverageRecord record;
+        while ((record = cursor.next()) != null) {
+            report.ingest(record);
+        }
+        return report;
+    }
+
+    /***
+     * Ingest one test of a loaded report.  A test listed under a requirement carries the same scenarios as
+     * in system coverage, so they are only added when the test was not already loaded.
+     */
+    private void ingest(CoverageRecord record) {
+        ExecutedTest test = findTest(record.getSubject(), record.getTestName());
+        boolean isLoaded = test != null;
+        if (!isLoaded) {
+            test = getTestInstance(record.getTestName(), record.getSubject(), record.getVerificationCount(), null, UNTIMED);
+            if (test == null) {
+                return;
+            }
+        }
+        String requirement = record.getRequirement();
+        if ((!isLoaded || requirement == null) && record.getScenarios() != null) {
+            boolean changed = false;
+            for (Scenario scenario : record.getScenarios()) {
+                boolean added = test.addScenario(scenarioPool.intern(scenario));
+                metrics.recordTestScenario(added);
+                changed |= added;
+            }
+            if (changed) {
+                test.invalidateFragments();
+            }
+        }
+        if (record.getTiming() != null) {
+            addTimings(test, record);
+        }
+        if (requirement != null && !requirement.isBlank()) {
+            metrics.recordRequirements(1, requirementsCoverage.link(requirement, test) ? 1 : 0);
+        }
+    }
+
+    private void addTimings(ExecutedTest test, CoverageRecord record) {
+        test.addTiming(null, record.getTiming());
+        List<Scenario> scenarios = record.getScenarios();
+        List<LatencyHistogram> scenarioTimings = record.getScenarioTimings();
+        for (int index = 0; scenarios != null && index < scenarios.size(); index++) {
+            LatencyHistogram timing = scenarioTimings.get(index);
+            if (timing != null) {
+                test.addTiming(scenarioPool.intern(scenarios.get(index)), timing);
+            }
+        }
+        test.invalidateFragments();
+    }
+
+    /***
+     * Wait until every entry recorded before this call has been ingested; entries are ingested
+     * immediately unless the report is asynchronous
+     */
+    public void flush() {
+        if (aggregator != null) {
+            aggregator.flush();
+        }
+    }
+
+    /***
+     * Ingest queued entries, close the entry sink, unregister metrics, delete spilled runs, and close the
+     * journal last.  Every resource is closed even if another fails; the first failure is then thrown.
+     * Entries recorded afterward are ingested on the recording thread, and are not journaled.
+     */
+    @Override
+    public void close() {
+        RuntimeException failure = null;
+        try {
+            if (aggregator != null) {
+                try {
+                    aggregator.close();
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+            EntrySink closingSink = entrySink;
+            if (closingSink != null) {
+                try {
+                    closingSink.close();
+                } catch (IOException e) {
+                    failure = firstFailure(failure, new UncheckedIOException(e));
+                } catch (RuntimeException e) {
+                    failure = firstFailure(failure, e);
+                }
+            }
+            try {
+                metrics.close();
+            } catch (RuntimeException e) {
+                failure = firstFailure(failure, e);
+            }
+            try {
+                deleteSpilledRuns();
+            } catch (IOException e) {
+                failure = firstFailure(failure, new UncheckedIOException(e));
+            }
+        } finally {
+            CoverageJournal closing = journal;
+            journal = null;
+            if (closing != null) {
+                try {
+                    closing.close();
+                } catch (IOException e) {
+                    failure = firstFailure(failure, new UncheckedIOException(e));
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /***
+     * Delete the run files of a spilling report and stop spilling, so later entries are held in memory
+     */
+    private void deleteSpilledRuns() throws IOException {
+        Lock lock = spillLock.writeLock();
+        lock.lock();
+        try {
+            SpilledRuns runs = spillRuns;
+            spillRuns = null;
+            if (runs != null) {
+                runs.delete();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static RuntimeException firstFailure(RuntimeException first, RuntimeException next) {
+        if (first == null) {
+            return next;
+        }
+        first.addSuppressed(next);
+        return first;
+    }
+
+    /***
+     * @return long count of entries discarded by an asynchronous report under the DROP backpressure policy,
+     * by a collector report whose collection is full, or by a client report that could not deliver them
+     */
+    public long getDroppedEntryCount() {
+        EntrySink sink = entrySink;
+        return (aggregator == null ? 0 : aggregator.getDroppedCount()) + (sink == null ? 0 : sink.getDroppedCount());
+    }
+
+    /***
+     * @return long count of entries an asynchronous report could not ingest (e.g. test data Gson cannot serialize)
+     */
+    public long getFailedEntryCount() {
+        return aggregator == null ? 0 : aggregator.getFailedCount();
+    }
+
+    /***
+     * @return long count of recorded scenarios found in the report's scenario pool, and so shared with
+     * another test or entry rather than stored again
+     */
+    public long getScenarioPoolHitCount() {
+        flush();
+        return scenarioPool.getHitCount();
+    }
+
+    /***
+     * @return long count of recorded scenarios new to the report's scenario pool, i.e. distinct scenarios
+     */
+    public long getScenarioPoolMissCount() {
+        flush();
+        return scenarioPool.getMissCount();
+    }
+
+    /***
+     * @return CoverageReportMetrics of this report, updated as entries are ingested and reports rendered
+     */
+    public CoverageReportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /***
+     * Register this report's metrics with the platform MBean server, as
+     * org.softwareonpurpose.coverage4test:type=CoverageReport,name={name}, until the report is closed
+     * @param name Name distinguishing the report (e.g. the suite name)
+     * @return This CoverageReport
+     * @throws JMException if the name is invalid or already registered
+     */
+    public CoverageReport registerMetrics(String name) throws JMException {
+        metrics.register(name);
+        return this;
     }
 
     /***
@@ -108,61 +942,266 @@ public class CoverageReport {
      * @return String  JSON formatted report from submitted test execution data
      */
     public String getSystemCoverage() {
-        StringBuilder systemCoverageReport =
-                new StringBuilder(String.format("{\"%s\":\"%s\"", COVERAGE_ELEMENT_NAME, COVERAGE_TYPE_SYSTEM));
-        if (systemCoverage.size() > 0) {
-            systemCoverageReport.append(",\"subjects\":[");
-            String subject = systemCoverage.first().getSubject();
-            systemCoverageReport.append(String.format("{\"subject\":\"%s\",\"tests\":[", subject));
-            String testDelimiter = "";
-            for (ExecutedTest test : systemCoverage) {
-                if (!subject.equals(test.getSubject())) {
-                    testDelimiter = "";
-                    systemCoverageReport.append("]}");
-                    subject = test.getSubject();
-                    systemCoverageReport.append(String.format(",{\"subject\":\"%s\",\"tests\":[", subject));
-                }
-                systemCoverageReport.append(String.format("%s%s", testDelimiter, test));
-                testDelimiter = ",";
-            }
-            systemCoverageReport.append("]}]");
+        StringWriter systemCoverageReport = new StringWriter();
+        try {
+            writeSystemCoverage(systemCoverageReport);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        systemCoverageReport.append("}");
         return systemCoverageReport.toString();
     }
 
+    /***
+     * Stream the System Coverage report to a Writer, one test at a time, rather than building it in memory.
+     * The Writer is flushed, but not closed.
+     * @param writer Writer to which the JSON formatted report is written
+     * @throws IOException if the report cannot be written
+     */
+    public void writeSystemCoverage(Writer writer) throws IOException {
+        render(writer, this::writeSystemCoverage, CoverageReportMerger::writeSystemCoverage);
+    }
+
     @Override
     public String toString() {
-        return String.format("{\"coverageReport\":{\"reports\":[%s,%s]}}", getSystemCoverage(), getRequirementsCoverage());
+        StringWriter report = new StringWriter();
+        try {
+            writeTo(report);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return report.toString();
+    }
+
+    /***
+     * Stream the complete report (System and Requirements Coverage), as returned by toString(), to a Writer.
+     * The Writer is flushed, but not closed.
+     * @param writer Writer to which the JSON formatted report is written
+     * @throws IOException if the report cannot be written
+     */
+    public void writeTo(Writer writer) throws IOException {
+        render(writer, json -> {
+            json.beginObject().name("coverageReport").beginObject().name("reports").beginArray();
+            writeSystemCoverage(json);
+            writeRequirementsCoverage(json);
+            json.endArray().endObject().endObject();
+        }, CoverageReportMerger::writeTo);
+    }
+
+    /***
+     * Stream the complete report (System and Requirements Coverage), as returned by toString(), to a UTF-8 file
+     * @param path Path of the file to create or replace
+     * @throws IOException if the report cannot be written
+     */
+    public void writeTo(Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writeTo(writer);
+        }
+    }
+
+    /***
+     * @return Requirements covered by the report, sorted by name
+     */
+    Collection<RequirementsIndex.Requirement> getCoveredRequirements() {
+        flush();
+        requireUnspilled();
+        return requirementsCoverage.getRequirements();
+    }
+
+    /***
+     * Index the report for traceability queries (which tests cover a requirement, which requirements a
+     * subject or test covers, which scenarios a test ran, which tests ran a scenario).  The index is a
+     * snapshot: build another to reflect entries added afterward.
+     * @return CoverageIndex of every test, scenario and requirement recorded so far
+     */
+    public CoverageIndex getIndex() {
+        flush();
+        requireUnspilled();
+        return CoverageIndex.getInstance(systemCoverage, requirementsCoverage.getRequirements(), (int) getRegisteredTestCount());
+    }
+
+    /***
+     * Write the complete report in a compact binary form, which holds every subject, test, requirement and
+     * scenario string once, and which loadBinary reads back into an identical report, timing included
+     * @param out OutputStream to which the report is written; flushed, but not closed
+     * @param compressed Whether to compress the report with gzip
+     * @throws IOException if the report cannot be written
+     */
+    public void writeBinaryTo(OutputStream out, boolean compressed) throws IOException {
+        flush();
+        requireUnspilled();
+        if (!compressed) {
+            BinaryReportCodec.write(out, systemCoverage, requirementsCoverage.getRequirements(), this::getTest);
+            return;
+        }
+        GZIPOutputStream gzip = new GZIPOutputStream(out, BINARY_BUFFER_CAPACITY);
+        BinaryReportCodec.write(gzip, systemCoverage, requirementsCoverage.getRequirements(), this::getTest);
+        gzip.finish();
+        out.flush();
+    }
+
+    /***
+     * Write the complete report in binary form to a file; see writeBinaryTo(OutputStream, boolean)
+     * @param path Path of the file to create or replace
+     * @param compressed Whether to compress the report with gzip
+     * @throws IOException if the report cannot be written
+     */
+    public void writeBinaryTo(Path path, boolean compressed) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            writeBinaryTo(out, compressed);
+        }
     }
 
     public String getRequirementsCoverage() {
-        StringBuilder requirementsCoverageReport = new StringBuilder(String.format("{\"%s\":\"%s\"", COVERAGE_ELEMENT_NAME, COVERAGE_TYPE_REQUIREMENTS));
-        if (requirementsCoverage.size() > 0) {
-            String delimiter = "";
-            requirementsCoverageReport.append(",\"requirements\":[");
-            for (String key : requirementsCoverage.keySet()) {
-                requirementsCoverageReport.append(String.format("%s{\"requirement\":\"%s\",\"subjects\":[", delimiter, key));
-                SortedSet<ExecutedTest> executedTests = requirementsCoverage.get(key);
-                String subject = executedTests.first().getSubject();
-                requirementsCoverageReport.append(String.format("{\"subject\":\"%s\",\"tests\":[", subject));
-                String testDelimiter = "";
-                for (ExecutedTest test : executedTests) {
-                    if (!subject.equals(test.getSubject())) {
-                        testDelimiter = "";
-                        requirementsCoverageReport.append("]}");
-                        subject = test.getSubject();
-                        requirementsCoverageReport.append(String.format(",{\"subject\":\"%s\",\"tests\":[", subject));
-                    }
-                    requirementsCoverageReport.append(String.format("%s%s", testDelimiter, test));
-                    testDelimiter = ",";
+        StringWriter requirementsCoverageReport = new StringWriter();
+        try {
+            writeRequirementsCoverage(requirementsCoverageReport);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return requirementsCoverageReport.toString();
+    }
+
+    /***
+     * Stream the Requirements Coverage report to a Writer, one test at a time, rather than building it in memory.
+     * The Writer is flushed, but not closed.
+     * @param writer Writer to which the JSON formatted report is written
+     * @throws IOException if the report cannot be written
+     */
+    public void writeRequirementsCoverage(Writer writer) throws IOException {
+        render(writer, this::writeRequirementsCoverage, CoverageReportMerger::writeRequirementsCoverage);
+    }
+
+    /***
+     * Render a report to a Writer, recording its duration and size in the report's metrics
+     * @param rendering Renders the report from memory
+     * @param merging Renders the report by merging spilled runs, if the report spills
+     */
+    private void render(Writer writer, RenderedFragment.Renderer rendering, MergedRenderer merging) throws IOException {
+        flush();
+        long start = System.nanoTime();
+        CoverageReportMetrics.CountingWriter counted = CoverageReportMetrics.counting(writer);
+        JsonWriter json = new JsonWriter(counted);
+        CoverageReportMerger merger = mergeSpilledRuns();
+        if (merger == null) {
+            rendering.writeTo(json);
+        } else {
+            merging.writeTo(merger, json);
+        }
+        json.flush();
+        metrics.recordRender(System.nanoTime() - start, counted.getCount());
+    }
+
+    private void writeSystemCoverage(JsonWriter json) throws IOException {
+        json.beginObject().name(COVERAGE_ELEMENT_NAME).value(COVERAGE_TYPE_SYSTEM);
+        List<SubjectCoverage> subjects = new ArrayList<>();
+        for (SubjectCoverage subject : systemCoverage.values()) {
+            if (!subject.isEmpty()) {
+                subjects.add(subject);
+            }
+        }
+        if (!subjects.isEmpty()) {
+            boolean cached = fragmentsCached;
+            Executor executor = renderExecutor;
+            json.name("subjects").beginArray();
+            if (executor == null) {
+                for (SubjectCoverage subject : subjects) {
+                    subject.writeTo(json, cached);
                 }
-                requirementsCoverageReport.append("]}]}");
-                delimiter = ",";
+            } else {
+                writeInParallel(json, subjects, subject -> subject.toJson(cached), executor);
             }
-            requirementsCoverageReport.append("]");
+            json.endArray();
         }
-        requirementsCoverageReport.append("}");
-        return requirementsCoverageReport.toString();
+        json.endObject();
+    }
+
+    private void writeRequirementsCoverage(JsonWriter json) throws IOException {
+        json.beginObject().name(COVERAGE_ELEMENT_NAME).value(COVERAGE_TYPE_REQUIREMENTS);
+        if (!requirementsCoverage.isEmpty()) {
+            boolean cached = fragmentsCached;
+            Executor executor = renderExecutor;
+            json.name("requirements").beginArray();
+            if (executor == null) {
+                for (RequirementsIndex.Requirement requirement : requirementsCoverage.getRequirements()) {
+                    requirement.writeTo(json, cached);
+                }
+            } else {
+                writeInParallel(json, requirementsCoverage.getRequirements(), requirement -> requirement.toJson(cached), executor);
+            }
+            json.endArray();
+        }
+        json.endObject();
+    }
+
+    /***
+     * Render fragments on an executor, in batches of consecutive parts a bounded window ahead of the writer,
+     * and write them in order
+     * @param json JsonWriter positioned within an array
+     * @param parts Parts of the report, in report order
+     * @param renderer Renders the JSON of one part
+     * @param executor Executor rendering the parts
+     * @throws IOException if a part cannot be rendered or written
+     */
+    private static <T> void writeInParallel(JsonWriter json, Collection<T> parts, FragmentRenderer<T> renderer, Executor executor)
+            throws IOException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int window = processors * PARALLEL_RENDER_BATCHES_PER_PROCESSOR;
+        int batchSize = Math.max(1, Math.min(PARALLEL_RENDER_MAX_BATCH, parts.size() / window));
+        Deque<CompletableFuture<String[]>> rendering = new ArrayDeque<>();
+        try {
+            Iterator<T> remaining = parts.iterator();
+            while (remaining.hasNext()) {
+                List<T> batch = new ArrayList<>(batchSize);
+                while (remaining.hasNext() && batch.size() < batchSize) {
+                    batch.add(remaining.next());
+                }
+                rendering.add(CompletableFuture.supplyAsync(() -> render(batch, renderer), executor));
+                if (rendering.size() >= window) {
+                    write(json, rendering.poll());
+                }
+            }
+            while (!rendering.isEmpty()) {
+                write(json, rendering.poll());
+            }
+        } finally {
+            for (CompletableFuture<String[]> abandoned : rendering) {
+                abandoned.cancel(false);
+            }
+        }
+    }
+
+    private static <T> String[] render(List<T> batch, FragmentRenderer<T> renderer) {
+        String[] fragments = new String[batch.size()];
+        try {
+            for (int index = 0; index < fragments.length; index++) {
+                fragments[index] = renderer.toJson(batch.get(index));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return fragments;
+    }
+
+    private static void write(JsonWriter json, CompletableFuture<String[]> batch) throws IOException {
+        String[] fragments;
+        try {
+            fragments = batch.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        for (String fragment : fragments) {
+            json.jsonValue(fragment);
+        }
+    }
+
+    private interface FragmentRenderer<T> {
+        String toJson(T part) throws IOException;
+    }
+
+    private interface MergedRenderer {
+        void writeTo(CoverageReportMerger merger, JsonWriter json) throws IOException;
     }
 }
@@ -0,0 +1,581 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/***
+ * Merges JSON coverage reports written by separate CoverageReports (e.g. one per Gradle fork or CI shard)
+ * into one report, as if every entry had been recorded by a single CoverageReport.  Each report is already
+ * sorted, so the reports are streamed together with a k-way merge: memory holds one test per report, not
+ * the reports themselves.  Merged tests are kept in temporary files, indexed on disk, for requirements coverage.
+ * <p>
+ * Command line: java -jar coverage4test.jar [--system file] [--requirements file] [--output file] report|directory...
+ * Directories contribute every *.rpt file they contain.  Without an output option, the complete report is
+ * written to standard output.
+ */
+public final class CoverageReportMerger {
+    private static final String REPORT_EXTENSION = ".rpt";
+    private final List<RecordSource> reports;
+
+    private CoverageReportMerger(List<RecordSource> reports) {
+        this.reports = reports;
+    }
+
+    /***
+     * @param reports Paths of JSON reports, each a system, requirements or complete (toString()) report
+     * @return CoverageReportMerger instance
+     */
+    public static CoverageReportMerger getInstance(List<Path> reports) {
+        List<RecordSource> sources = new ArrayList<>();
+        for (Path report : reports) {
+            sources.add(coverageType -> ReportCursor.open(Files.newBufferedReader(report, StandardCharsets.UTF_8),
+                    report.toString(), coverageType));
+        }
+        return new CoverageReportMerger(sources);
+    }
+
+    /***
+     * @param reports Sources of the reports to merge; a test's verification count is taken from the first
+     * source listing it
+     * @return CoverageReportMerger instance
+     */
+    static CoverageReportMerger getSourceInstance(List<RecordSource> reports) {
+        return new CoverageReportMerger(List.copyOf(reports));
+    }
+
+    /***
+     * Write the complete merged report (System and Requirements Coverage), in the format of CoverageReport.toString()
+     * @param output Path of the file to create or replace
+     * @throws IOException if a report cannot be read or the output cannot be written
+     */
+    public void writeTo(Path output) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writeTo(writer);
+        }
+    }
+
+    /***
+     * Write the complete merged report (System and Requirements Coverage), in the format of CoverageReport.toString()
+     * @param writer Writer to which the report is written; flushed, but not closed
+     * @throws IOException if a report cannot be read or the output cannot be written
+     */
+    public void writeTo(Writer writer) throws IOException {
+        writeTo(new JsonWriter(writer));
+    }
+
+    /***
+     * Write the complete merged report, in the format of CoverageReport.toString()
+     * @param json JsonWriter to which the report is written; flushed, but not closed
+     * @throws IOException if a report cannot be read or the output cannot be written
+     */
+    void writeTo(JsonWriter json) throws IOException {
+        try (TestStore tests = TestStore.create()) {
+            json.beginObject().name("coverageReport").beginObject().name("reports").beginArray();
+            writeSystemCoverage(json, tests);
+            writeRequirementsCoverage(json, tests);
+            json.endArray().endObject().endObject();
+            json.flush();
+        }
+    }
+
+    /***
+     * Write the merged System Coverage report, in the format of CoverageReport.getSystemCoverage()
+     * @param json JsonWriter to which the report is written; flushed, but not closed
+     * @throws IOException if a report cannot be read or the output cannot be written
+     */
+    void writeSystemCoverage(JsonWriter json) throws IOException {
+        try (TestStore tests = TestStore.create()) {
+            writeSystemCoverage(json, tests);
+        }
+    }
+
+    /***
+     * Write the merged Requirements Coverage report, in the format of CoverageReport.getRequirementsCoverage()
+     * @param json JsonWriter to which the report is written; flushed, but not closed
+     * @throws IOException if a report cannot be read or the output cannot be written
+     */
+    void writeRequirementsCoverage(JsonWriter json) throws IOException {
+        try (TestStore tests = TestStore.create()) {
+            writeSystemCoverage(new JsonWriter(Writer.nullWriter()), tests);
+            writeRequirementsCoverage(json, tests);
+        }
+    }
+
+    /***
+     * Write the merged System and Requirements Coverage reports to separate files
+     * @param systemOutput Path of the System Coverage file to create or replace
+     * @param requirementsOutput Path of the Requirements Coverage file to create or replace
+     * @throws IOException if a report cannot be read or the output cannot be written
+     */
+    public void writeTo(Path systemOutput, Path requirementsOutput) throws IOException {
+        try (TestStore tests = TestStore.create()) {
+            try (Writer writer = Files.newBufferedWriter(systemOutput, StandardCharsets.UTF_8)) {
+                writeSystemCoverage(new JsonWriter(writer), tests);
+            }
+            try (Writer writer = Files.newBufferedWriter(requirementsOutput, StandardCharsets.UTF_8)) {
+                writeRequirementsCoverage(new JsonWriter(writer), tests);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int status = run(args, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /***
+     * Run the command line
+     * @param args Command line arguments
+     * @param out PrintStream to which the complete report is written when no output option is given
+     * @param err PrintStream to which usage errors are written
+     * @return int exit status: 0, or 2 for a usage error
+     * @throws IOException if a report cannot be read or the output cannot be written
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) throws IOException {
+        Path system = null;
+        Path requirements = null;
+        Path output = null;
+        List<Path> reports = new ArrayList<>();
+        for (int index = 0; index < args.length; index++) {
+            String argument = args[index];
+            boolean isOption = argument.startsWith("--");
+            if (isOption && index + 1 == args.length) {
+                return usage(err, String.format("%s requires a file", argument));
+            }
+            switch (isOption ? argument : "") {
+                case "--system":
+                    system = Path.of(args[++index]);
+                    break;
+                case "--requirements":
+                    requirements = Path.of(args[++index]);
+                    break;
+                case "--output":
+                    output = Path.of(args[++index]);
+                    break;
+                case "":
+                    reports.addAll(expand(Path.of(argument)));
+                    break;
+                default:
+                    return usage(err, String.format("Unknown option %s", argument));
+            }
+        }
+        if (reports.isEmpty()) {
+            return usage(err, "No reports to merge");
+        }
+        CoverageReportMerger merger = getInstance(reports);
+        if (system != null || requirements != null) {
+            Path systemOutput = system == null ? Files.createTempFile("system", REPORT_EXTENSION) : system;
+            Path requirementsOutput = requirements == null ? Files.createTempFile("requirements", REPORT_EXTENSION) : requirements;
+            try {
+                merger.writeTo(systemOutput, requirementsOutput);
+            } finally {
+                if (system == null) {
+                    Files.deleteIfExists(systemOutput);
+                }
+                if (requirements == null) {
+                    Files.deleteIfExists(requirementsOutput);
+                }
+            }
+        }
+        if (output != null) {
+            merger.writeTo(output);
+        } else if (system == null && requirements == null) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            merger.writeTo(writer);
+            writer.flush();
+        }
+        return 0;
+    }
+
+    private static List<Path> expand(Path argument) throws IOException {
+        if (!Files.isDirectory(argument)) {
+            return List.of(argument);
+        }
+        try (Stream<Path> files = Files.list(argument)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(REPORT_EXTENSION) && Files.isRegularFile(file))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static int usage(PrintStream err, String message) {
+        err.println(message);
+        err.println("Usage: java -jar coverage4test.jar [--system file] [--requirements file] [--output file] report|directory...");
+        return 2;
+    }
+
+    /***
+     * Merge the system coverage of every report, recording where each merged test was written in the TestStore
+     */
+    private void writeSystemCoverage(JsonWriter json, TestStore tests) throws IOException {
+        json.beginObject().name(CoverageReport.COVERAGE_ELEMENT_NAME).value(CoverageReport.COVERAGE_TYPE_SYSTEM);
+        try (MergedCursor cursor = MergedCursor.open(reports, CoverageReport.COVERAGE_TYPE_SYSTEM)) {
+            GroupWriter output = new GroupWriter(json, "subjects");
+            List<CoverageRecord> records;
+            while ((records = cursor.next()) != null) {
+                CoverageRecord first = records.get(0);
+                String test = CoverageJson.toJson(merge(records));
+                tests.put(first.getSubject(), first.getTestName(), test);
+                output.writeTest(null, first.getSubject(), test);
+            }
+            output.finish();
+        }
+        json.endObject();
+        json.flush();
+    }
+
+    /***
+     * Merge the requirements coverage of every report, taking each test as merged into system coverage, so
+     * that its scenarios include those recorded in reports where it was not linked to the requirement
+     */
+    private void writeRequirementsCoverage(JsonWriter json, TestStore tests) throws IOException {
+        json.beginObject().name(CoverageReport.COVERAGE_ELEMENT_NAME).value(CoverageReport.COVERAGE_TYPE_REQUIREMENTS);
+        try (MergedCursor cursor = MergedCursor.open(reports, CoverageReport.COVERAGE_TYPE_REQUIREMENTS)) {
+            GroupWriter output = new GroupWriter(json, "requirements");
+            List<CoverageRecord> records;
+            while ((records = cursor.next()) != null) {
+                CoverageRecord first = records.get(0);
+                String test = tests.get(first.getSubject(), first.getTestName());
+                if (test == null) {
+                    test = CoverageJson.toJson(merge(records));
+                }
+                output.writeTest(first.getRequirement(), first.getSubject(), test);
+            }
+            output.finish();
+        }
+        json.endObject();
+        json.flush();
+    }
+
+    /***
+     * Merge records of one test as addTest does: the verification count first recorded (here, of the first
+     * report listing the test), the union of scenarios, and the sum of the timings records carry
+     */
+    static ExecutedTest merge(List<CoverageRecord> records) {
+        CoverageRecord first = records.get(0);
+        ExecutedTest test = ExecutedTest.getInstance(first.getTestName(), first.getSubject(), first.getVerificationCount(), null);
+        if (test == null) {
+            throw new IllegalArgumentException(String.format("Invalid test '%s' of subject '%s'", first.getTestName(), first.getSubject()));
+        }
+        for (CoverageRecord record : records) {
+            List<Scenario> scenarios = record.getScenarios();
+            if (scenarios != null) {
+                test.addScenarios(scenarios);
+            }
+            if (record.getTiming() != null) {
+                test.addTiming(null, record.getTiming());
+                for (int index = 0; scenarios != null && index < scenarios.size(); index++) {
+                    LatencyHistogram timing = record.getScenarioTimings().get(index);
+                    if (timing != null) {
+                        test.addTiming(scenarios.get(index), timing);
+                    }
+                }
+            }
+        }
+        return test;
+    }
+
+    /**
+     * Report to merge, opened once per section
+     */
+    interface RecordSource {
+        /***
+         * @param coverageType "system" or "requirements"
+         * @return RecordCursor of the section; empty if the report lacks it
+         * @throws IOException if the report cannot be read
+         */
+        RecordCursor open(String coverageType) throws IOException;
+    }
+
+    /**
+     * K-way merge of the same section of several reports, returning all records of one test at a time
+     */
+    static class MergedCursor implements Closeable {
+        private final List<RecordCursor> cursors;
+        private final PriorityQueue<Head> heads = new PriorityQueue<>();
+
+        private MergedCursor(List<RecordCursor> cursors) {
+            this.cursors = cursors;
+        }
+
+        static MergedCursor open(List<RecordSource> reports, String coverageType) throws IOException {
+            MergedCursor merged = new MergedCursor(new ArrayList<>());
+            try {
+                for (RecordSource report : reports) {
+                    merged.cursors.add(report.open(coverageType));
+                    merged.advance(merged.cursors.size() - 1);
+                }
+            } catch (IOException | RuntimeException e) {
+                merged.close();
+                throw e;
+            }
+            return merged;
+        }
+
+        /***
+         * @return Records of the next test, in report order, or null when every report is exhausted
+         */
+        List<CoverageRecord> next() throws IOException {
+            Head head = heads.poll();
+            if (head == null) {
+                return null;
+            }
+            List<CoverageRecord> records = new ArrayList<>();
+            records.add(head.record);
+            advance(head.report);
+            while (!heads.isEmpty() && heads.peek().record.isSameTest(head.record)) {
+                Head same = heads.poll();
+                records.add(same.record);
+                advance(same.report);
+            }
+            return records;
+        }
+
+        private void advance(int report) throws IOException {
+            CoverageRecord record = cursors.get(report).next();
+            if (record != null) {
+                heads.add(new Head(record, report));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (RecordCursor cursor : cursors) {
+                try {
+                    cursor.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private static class Head implements Comparable<Head> {
+        private final CoverageRecord record;
+        private final int report;
+
+        private Head(CoverageRecord record, int report) {
+            this.record = record;
+            this.report = report;
+        }
+
+        @Override
+        public int compareTo(Head comparator) {
+            int order = CoverageRecord.REPORT_ORDER.compare(record, comparator.record);
+            return order != 0 ? order : Integer.compare(report, comparator.report);
+        }
+    }
+
+    /**
+     * Writes rendered tests, in report order, grouped by requirement (requirements coverage) and subject
+     */
+    private static class GroupWriter {
+        private final JsonWriter json;
+        private final String elements;
+        private boolean started;
+        private String requirement;
+        private String subject;
+
+        private GroupWriter(JsonWriter json, String elements) {
+            this.json = json;
+            this.elements = elements;
+        }
+
+        private void writeTest(String testRequirement, String testSubject, String test) throws IOException {
+            if (!started) {
+                json.name(elements).beginArray();
+                started = true;
+            } else if (!Objects.equals(requirement, testRequirement)) {
+                json.endArray().endObject().endArray().endObject();
+                subject = null;
+            } else if (!subject.equals(testSubject)) {
+                json.endArray().endObject();
+                subject = null;
+            }
+            if (testRequirement != null && subject == null && !testRequirement.equals(requirement)) {
+                json.beginObject().name("requirement").value(testRequirement).name("subjects").beginArray();
+            }
+            requirement = testRequirement;
+            if (subject == null) {
+                json.beginObject().name("subject").value(testSubject).name("tests").beginArray();
+                subject = testSubject;
+            }
+            json.jsonValue(test);
+        }
+
+        private void finish() throws IOException {
+            if (!started) {
+                return;
+            }
+            json.endArray().endObject();
+            if (requirement != null) {
+                json.endArray().endObject();
+            }
+            json.endArray();
+        }
+    }
+
+    /**
+     * Temporary file of merged tests, put in report order, and a second file of the offset of each, so that
+     * requirements coverage can find a test as merged into system coverage by binary search, holding neither
+     * the tests nor an index of them in memory
+     */
+    private static class TestStore implements Closeable {
+        private static final int OFFSET_BUFFER_CAPACITY = 8192;
+        private final Path path;
+        private final FileChannel channel;
+        private final Path offsetsPath;
+        private final FileChannel offsets;
+        private final ByteBuffer pendingOffsets = ByteBuffer.allocate(OFFSET_BUFFER_CAPACITY);
+        private final ByteBuffer scratch = ByteBuffer.allocate(Long.BYTES);
+        private long size;
+        private long count;
+
+        private TestStore(Path path, FileChannel channel, Path offsetsPath, FileChannel offsets) {
+            this.path = path;
+            this.channel = channel;
+            this.offsetsPath = offsetsPath;
+            this.offsets = offsets;
+        }
+
+        static TestStore create() throws IOException {
+            Path path = Files.createTempFile("coverage4test-merge", ".tmp");
+            Path offsetsPath = null;
+            FileChannel channel = null;
+            try {
+                offsetsPath = Files.createTempFile("coverage4test-merge", ".idx");
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                FileChannel offsets = FileChannel.open(offsetsPath, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+                return new TestStore(path, channel, offsetsPath, offsets);
+            } catch (IOException | RuntimeException e) {
+                if (channel != null) {
+                    channel.close();
+                }
+                Files.deleteIfExists(path);
+                if (offsetsPath != null) {
+                    Files.deleteIfExists(offsetsPath);
+                }
+                throw e;
+            }
+        }
+
+        /***
+         * Store a merged test; tests must be put in report order (by subject, then test name)
+         */
+        void put(String subject, String testName, String test) throws IOException {
+            byte[] subjectBytes = subject.getBytes(StandardCharsets.UTF_8);
+            byte[] testNameBytes = testName.getBytes(StandardCharsets.UTF_8);
+            byte[] testBytes = test.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer entry = ByteBuffer.allocate(3 * Integer.BYTES + subjectBytes.length + testNameBytes.length + testBytes.length);
+            entry.putInt(subjectBytes.length).put(subjectBytes).putInt(testNameBytes.length).put(testNameBytes)
+                    .putInt(testBytes.length).put(testBytes).flip();
+            write(channel, entry, size);
+            if (!pendingOffsets.hasRemaining()) {
+                flushOffsets();
+            }
+            pendingOffsets.putLong(size);
+            size += entry.limit();
+            count++;
+        }
+
+        String get(String subject, String testName) throws IOException {
+            flushOffsets();
+            long low = 0;
+            long high = count - 1;
+            while (low <= high) {
+                long middle = (low + high) >>> 1;
+                long position = read(offsets, middle * Long.BYTES, Long.BYTES).getLong(0);
+                int subjectLength = read(channel, position, Integer.BYTES).getInt(0);
+                int order = subject.compareTo(readString(position + Integer.BYTES, subjectLength));
+                position += Integer.BYTES + subjectLength;
+                int testNameLength = read(channel, position, Integer.BYTES).getInt(0);
+                if (order == 0) {
+                    order = testName.compareTo(readString(position + Integer.BYTES, testNameLength));
+                }
+                if (order == 0) {
+                    position += Integer.BYTES + testNameLength;
+                    int testLength = read(channel, position, Integer.BYTES).getInt(0);
+                    return readString(position + Integer.BYTES, testLength);
+                }
+                if (order < 0) {
+                    high = middle - 1;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return null;
+        }
+
+        private void flushOffsets() throws IOException {
+            pendingOffsets.flip();
+            write(offsets, pendingOffsets, (count - pendingOffsets.remaining() / Long.BYTES) * Long.BYTES);
+            pendingOffsets.clear();
+        }
+
+        private String readString(long position, int length) throws IOException {
+            return new String(read(channel, position, ByteBuffer.allocate(length)).array(), StandardCharsets.UTF_8);
+        }
+
+        private ByteBuffer read(FileChannel source, long position, int length) throws IOException {
+            scratch.clear().limit(length);
+            return read(source, position, scratch);
+        }
+
+        private ByteBuffer read(FileChannel source, long position, ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                if (source.read(bytes, position + bytes.position()) < 0) {
+                    throw new EOFException(String.format("Merged tests truncated: %s", path));
+                }
+            }
+            return bytes;
+        }
+
+        private static void write(FileChannel target, ByteBuffer bytes, long position) throws IOException {
+            int start = bytes.position();
+            while (bytes.hasRemaining()) {
+                target.write(bytes, position + bytes.position() - start);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                channel.close();
+                offsets.close();
+            } finally {
+                Files.deleteIfExists(path);
+                Files.deleteIfExists(offsetsPath);
+            }
+        }
+    }
+}
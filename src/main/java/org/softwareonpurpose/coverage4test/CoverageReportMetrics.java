@@ -0,0 +1,364 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Always-on metrics of a CoverageReport: entries ingested, scenario de-duplication, serialization time,
+ * requirement fan-out, cardinalities, estimated retained heap and rendering.  Counters are LongAdders,
+ * so recording threads do not contend; readings reflect entries ingested so far, without waiting for
+ * entries queued by an asynchronous report.  Also registrable as a JMX MBean.
+ */
+public class CoverageReportMetrics implements CoverageReportMetricsMBean {
+    private static final String OBJECT_NAME = "org.softwareonpurpose.coverage4test:type=CoverageReport,name=%s";
+    private static final long STRING_BYTES = 40;
+    private static final long TEST_BYTES = 160;
+    private static final long SCENARIO_BYTES = 112;
+    private static final long TEST_SCENARIO_BYTES = 40;
+    private static final long REQUIREMENT_BYTES = 200;
+    private static final long LINK_BYTES = 6;
+    private final long createdNanos = System.nanoTime();
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder duplicateScenarios = new LongAdder();
+    private final LongAdder testScenarios = new LongAdder();
+    private final LongAdder serializations = new LongAdder();
+    private final LongAdder serializationNanos = new LongAdder();
+    private final LongAdder requirementLinks = new LongAdder();
+    private final LongAdder requirementReferences = new LongAdder();
+    private final LongAdder ingestedEntries = new LongAdder();
+    private final LongAccumulator maxRequirementFanOut = new LongAccumulator(Math::max, 0);
+    private final LongAdder testNameLength = new LongAdder();
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    private final LongAdder renderedChars = new LongAdder();
+    private final LongAdder spills = new LongAdder();
+    private volatile long spilledBytes;
+    private volatile long lastRenderNanos;
+    private volatile long lastRenderedChars;
+    private final LongSupplier testCount;
+    private final ScenarioPool scenarioPool;
+    private final RequirementsIndex requirements;
+    private volatile ObjectName registeredName;
+
+    private CoverageReportMetrics(LongSupplier testCount, ScenarioPool scenarioPool, RequirementsIndex requirements) {
+        this.testCount = testCount;
+        this.scenarioPool = scenarioPool;
+        this.requirements = requirements;
+    }
+
+    static CoverageReportMetrics getInstance(LongSupplier testCount, ScenarioPool scenarioPool, RequirementsIndex requirements) {
+        return new CoverageReportMetrics(testCount, scenarioPool, requirements);
+    }
+
+    void recordEntry() {
+        entries.increment();
+    }
+
+    void recordSerialization(long nanos) {
+        serializations.increment();
+        serializationNanos.add(nanos);
+    }
+
+    void recordTest(ExecutedTest test) {
+        testNameLength.add(test.getTestName().length());
+    }
+
+    /***
+     * @param added Whether the scenario was new to its test, rather than a duplicate
+     */
+    void recordTestScenario(boolean added) {
+        (added ? testScenarios : duplicateScenarios).increment();
+    }
+
+    /***
+     * @param references Requirements referenced by one entry
+     * @param links New links of the entry's test to those requirements
+     */
+    void recordRequirements(int references, int links) {
+        ingestedEntries.increment();
+        requirementReferences.add(references);
+        requirementLinks.add(links);
+        maxRequirementFanOut.accumulate(references);
+    }
+
+    /***
+     * Record that the report's tests and requirements were spilled and released; the bytes estimated for
+     * them so far are no longer counted as retained
+     */
+    void recordSpill() {
+        spills.increment();
+        spilledBytes = getAccumulatedBytes();
+    }
+
+    void recordRender(long nanos, long chars) {
+        renders.increment();
+        renderNanos.add(nanos);
+        renderedChars.add(chars);
+        lastRenderNanos = nanos;
+        lastRenderedChars = chars;
+    }
+
+    /***
+     * @param writer Writer to which a report is rendered
+     * @return Writer counting the chars written through it
+     */
+    static CountingWriter counting(Writer writer) {
+        return new CountingWriter(writer);
+    }
+
+    /***
+     * Register these metrics with the platform MBean server, as
+     * org.softwareonpurpose.coverage4test:type=CoverageReport,name={name}
+     * @param name Name distinguishing the report
+     * @throws JMException if the name is invalid or already registered
+     */
+    synchronized void register(String name) throws JMException {
+        unregister();
+        ObjectName objectName = new ObjectName(String.format(OBJECT_NAME, ObjectName.quote(name)));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        registeredName = objectName;
+    }
+
+    /***
+     * Unregister these metrics from the platform MBean server, if registered
+     * @throws IllegalStateException if they cannot be unregistered
+     */
+    void close() {
+        try {
+            unregister();
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized void unregister() throws JMException {
+        ObjectName objectName = registeredName;
+        registeredName = null;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (objectName != null && server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    /***
+     * @return long count of entries recorded
+     */
+    @Override
+    public long getEntryCount() {
+        return entries.sum();
+    }
+
+    /***
+     * @return double entries recorded per second since the report was created
+     */
+    @Override
+    public double getEntryRate() {
+        double seconds = (System.nanoTime() - createdNanos) / 1e9;
+        return seconds <= 0 ? 0 : entries.sum() / seconds;
+    }
+
+    /***
+     * @return long count of scenarios found in the report's scenario pool
+     */
+    @Override
+    public long getScenarioPoolHitCount() {
+        return scenarioPool.getHitCount();
+    }
+
+    /***
+     * @return long count of distinct scenarios added to the report's scenario pool
+     */
+    @Override
+    public long getScenarioPoolMissCount() {
+        return scenarioPool.getMissCount();
+    }
+
+    /***
+     * @return long count of scenarios recorded again for a test already holding them
+     */
+    @Override
+    public long getDuplicateScenarioCount() {
+        return duplicateScenarios.sum();
+    }
+
+    /***
+     * @return long count of test data objects serialized to scenario JSON
+     */
+    @Override
+    public long getSerializationCount() {
+        return serializations.sum();
+    }
+
+    /***
+     * @return long total nanoseconds spent serializing test data to scenario JSON
+     */
+    @Override
+    public long getSerializationNanos() {
+        return serializationNanos.sum();
+    }
+
+    /***
+     * @return long count of distinct test-to-requirement links
+     */
+    @Override
+    public long getRequirementLinkCount() {
+        return requirementLinks.sum();
+    }
+
+    /***
+     * @return double mean number of requirements referenced by an entry
+     */
+    @Override
+    public double getMeanRequirementFanOut() {
+        long count = ingestedEntries.sum();
+        return count == 0 ? 0 : (double) requirementReferences.sum() / count;
+    }
+
+    /***
+     * @return long most requirements referenced by one entry
+     */
+    @Override
+    public long getMaxRequirementFanOut() {
+        return maxRequirementFanOut.get();
+    }
+
+    @Override
+    public long getTestCount() {
+        return testCount.getAsLong();
+    }
+
+    @Override
+    public long getScenarioCount() {
+        return scenarioPool.getMissCount();
+    }
+
+    /***
+     * @return long count of scenarios held by tests, counting a scenario once for each test holding it
+     */
+    @Override
+    public long getTestScenarioCount() {
+        return testScenarios.sum();
+    }
+
+    @Override
+    public long getRequirementCount() {
+        return requirements.size();
+    }
+
+    /***
+     * Estimate the heap retained by the report: per-object overheads of its tests, pooled scenarios,
+     * test scenarios, requirements and links, plus the lengths of their names and scenario JSON, less
+     * those spilled to run files.  Overheads are fixed typical sizes, so the estimate is approximate: test
+     * data captured with captureTestData(), timings and JVM-specific layouts are not measured.
+     * @return long estimated bytes
+     */
+    @Override
+    public long getEstimatedRetainedBytes() {
+        return getTestCount() * (TEST_BYTES + STRING_BYTES) + getRequirementCount() * (REQUIREMENT_BYTES + STRING_BYTES)
+                + getAccumulatedBytes() - spilledBytes;
+    }
+
+    /***
+     * @return long count of times the report reached its memory ceiling and was spilled to a run file
+     */
+    @Override
+    public long getSpillCount() {
+        return spills.sum();
+    }
+
+    /***
+     * @return long estimated bytes of the counters accumulated since the report was created
+     */
+    private long getAccumulatedBytes() {
+        return testNameLength.sum()
+                + getScenarioCount() * (SCENARIO_BYTES + STRING_BYTES) + scenarioPool.getCanonicalLength()
+                + testScenarios.sum() * TEST_SCENARIO_BYTES
+                + requirements.getNameLength()
+                + requirementLinks.sum() * LINK_BYTES;
+    }
+
+    @Override
+    public long getRenderCount() {
+        return renders.sum();
+    }
+
+    /***
+     * @return long total nanoseconds spent rendering reports
+     */
+    @Override
+    public long getRenderNanos() {
+        return renderNanos.sum();
+    }
+
+    @Override
+    public long getLastRenderNanos() {
+        return lastRenderNanos;
+    }
+
+    /***
+     * @return long total chars of rendered reports
+     */
+    @Override
+    public long getRenderedCharCount() {
+        return renderedChars.sum();
+    }
+
+    @Override
+    public long getLastRenderedCharCount() {
+        return lastRenderedChars;
+    }
+
+    /**
+     * Writer counting the chars written through it
+     */
+    static class CountingWriter extends FilterWriter {
+        private long count;
+
+        private CountingWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            out.write(chars, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            out.write(text, offset, length);
+            count += length;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
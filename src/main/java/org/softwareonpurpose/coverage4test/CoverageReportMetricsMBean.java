@@ -0,0 +1,61 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+/**
+ * JMX view of a CoverageReport's metrics; see CoverageReportMetrics
+ */
+public interface CoverageReportMetricsMBean {
+    long getEntryCount();
+
+    double getEntryRate();
+
+    long getScenarioPoolHitCount();
+
+    long getScenarioPoolMissCount();
+
+    long getDuplicateScenarioCount();
+
+    long getSerializationCount();
+
+    long getSerializationNanos();
+
+    long getRequirementLinkCount();
+
+    double getMeanRequirementFanOut();
+
+    long getMaxRequirementFanOut();
+
+    long getTestCount();
+
+    long getScenarioCount();
+
+    long getTestScenarioCount();
+
+    long getRequirementCount();
+
+    long getEstimatedRetainedBytes();
+
+    long getSpillCount();
+
+    long getRenderCount();
+
+    long getRenderNanos();
+
+    long getLastRenderNanos();
+
+    long getRenderedCharCount();
+
+    long getLastRenderedCharCount();
+}
@@ -0,0 +1,171 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of a coverage entry: a format version byte, then the test name, subject,
+ * verification count, scenario JSON, requirements and elapsed nanoseconds.  Counts, lengths and times are
+ * unsigned varints offset by one, so that zero can stand for null; strings are UTF-8.  Version 1 entries,
+ * which have no elapsed time, are still decoded.
+ */
+class EntryCodec {
+    private static final byte VERSION = 2;
+    private static final byte UNTIMED_VERSION = 1;
+    private byte[] buffer = new byte[256];
+    private int position;
+
+    private EntryCodec() {
+    }
+
+    static EntryCodec getInstance() {
+        return new EntryCodec();
+    }
+
+    /***
+     * Encode an entry, reusing this codec's buffer
+     * @param testName Name of the test
+     * @param subject Subject of the test
+     * @param verificationCount Verification count, or null
+     * @param scenario Scenario, or null
+     * @param elapsedNanos Elapsed nanoseconds, or CoverageEntry.UNTIMED
+     * @param requirements Requirements, or null
+     * @return int length of the encoding, held in getBuffer() until the next call
+     */
+    int encode(String testName, String subject, Integer verificationCount, Scenario scenario, long elapsedNanos,
+               String... requirements) {
+        position = 0;
+        writeByte(VERSION);
+        writeString(testName);
+        writeString(subject);
+        writeVarint(verificationCount == null ? 0 : Integer.toUnsignedLong(verificationCount) + 1);
+        writeString(scenario == null ? null : scenario.getCanonical());
+        writeVarint(requirements == null ? 0 : requirements.length + 1L);
+        if (requirements != null) {
+            for (String requirement : requirements) {
+                writeString(requirement);
+            }
+        }
+        writeVarint(elapsedNanos + 1);
+        return position;
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    /***
+     * Decode one entry
+     * @param in ByteBuffer positioned at an encoded entry; advanced past it
+     * @return CoverageEntry decoded
+     * @throws IllegalArgumentException if the bytes are not an entry of a known version
+     */
+    static CoverageEntry decode(ByteBuffer in) {
+        try {
+            byte version = in.get();
+            if (version != VERSION && version != UNTIMED_VERSION) {
+                throw new IllegalArgumentException(String.format("Unknown coverage entry version %d", version));
+            }
+            String testName = readString(in);
+            String subject = readString(in);
+            long count = readVarint(in);
+            Integer verificationCount = count == 0 ? null : (int) (count - 1);
+            String scenario = readString(in);
+            long requirementCount = readVarint(in);
+            String[] requirements = null;
+            if (requirementCount > 0) {
+                requirements = new String[checkLength(requirementCount - 1, in)];
+                for (int index = 0; index < requirements.length; index++) {
+                    requirements[index] = readString(in);
+                }
+            }
+            long elapsedNanos = version == UNTIMED_VERSION ? CoverageEntry.UNTIMED : readVarint(in) - 1;
+            return CoverageEntry.getRecordedInstance(testName, subject, verificationCount,
+                    scenario == null ? null : Scenario.fromJson(scenario), elapsedNanos, requirements);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated coverage entry", e);
+        }
+    }
+
+    static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte next = in.get();
+            value |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    static String readString(ByteBuffer in) {
+        long length = readVarint(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[checkLength(length - 1, in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /***
+     * @param length Decoded length of a string, or count of requirements (each taking at least a byte)
+     * @param in ByteBuffer the length was read from
+     * @return int length, if no more than the bytes remaining
+     * @throws IllegalArgumentException if the length is negative or runs past the bytes remaining
+     */
+    private static int checkLength(long length, ByteBuffer in) {
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException(String.format("Coverage entry length %d exceeds its record", length));
+        }
+        return (int) length;
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            writeVarint(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length + 1L);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeByte(byte value) {
+        ensureCapacity(1);
+        buffer[position++] = value;
+    }
+
+    private void ensureCapacity(int length) {
+        if (position + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+        }
+    }
+}
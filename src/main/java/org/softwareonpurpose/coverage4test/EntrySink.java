@@ -0,0 +1,34 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.io.Closeable;
+
+/**
+ * Destination of the entries of a CoverageReport which does not hold them itself, such as a collection
+ * shared by test JVMs or a collector server
+ */
+interface EntrySink extends Closeable {
+    /***
+     * Accept an entry; safe to call from multiple threads
+     * @return boolean whether the entry was accepted, rather than dropped
+     */
+    boolean append(String testName, String subject, Integer verificationCount, Scenario scenario, long elapsedNanos,
+                   String... requirements);
+
+    /***
+     * @return long count of entries dropped
+     */
+    long getDroppedCount();
+}
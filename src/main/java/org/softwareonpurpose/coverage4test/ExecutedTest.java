@@ -13,25 +13,34 @@
    limitations under the License.*/
 package org.softwareonpurpose.coverage4test;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 
 /**
- * Description of an Executed Test including the data scenarios it was executed with
+ * Description of an Executed Test including the data scenarios it was executed with.
+ * Scenarios are guarded by the ExecutedTest itself, so entries for different tests never contend.
  */
 class ExecutedTest implements Comparable<ExecutedTest> {
     private final String test;
     private transient final String subject;
     private final Integer verificationCount;
+    private transient int id = -1;
     @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
     private SortedSet<Scenario> scenarios;
+    private transient LatencyHistogram timing;
+    private transient Map<Scenario, LatencyHistogram> scenarioTimings;
+    private transient ScenarioSample sample;
+    private transient RenderedFragment[] fragments;
 
     private ExecutedTest(String testName, String subject, Scenario scenario, Integer verificationCount) {
         this.test = testName;
@@ -51,15 +60,48 @@ class ExecutedTest implements Comparable<ExecutedTest> {
      * Add a scenario
      *
      * @param scenario A test Scenario
+     * @return boolean whether the scenario was added, rather than null or already held
      */
-    void addScenario(Scenario scenario) {
+    synchronized boolean addScenario(Scenario scenario) {
         if (scenario == null) {
-            return;
+            return false;
+        }
+        if (sample == null) {
+            return getScenarios().add(scenario);
+        }
+        SortedSet<Scenario> held = getScenarios();
+        boolean added = sample.add(scenario, held);
+        if (added && scenarioTimings != null && scenarioTimings.size() > held.size()) {
+            scenarioTimings.keySet().retainAll(held);
         }
-        getScenarios().add(scenario);
+        return added;
+    }
+
+    /***
+     * Hold at most limit scenarios, sampled by hash, counting every scenario recorded; see ScenarioSample.
+     * Set before the test's first scenario is added.
+     * @param limit Most scenarios held, at least 1
+     */
+    synchronized void capScenarios(int limit) {
+        sample = ScenarioSample.getInstance(limit);
     }
 
-    public SortedSet<Scenario> getScenarios() {
+    /***
+     * @param scenario Scenario about to be recorded
+     * @return boolean whether adding the scenario could hold it; always, unless scenarios are capped
+     */
+    synchronized boolean admitsScenario(Scenario scenario) {
+        return sample == null || sample.admits(scenario, getScenarios());
+    }
+
+    /***
+     * @return ScenarioSample of a test whose scenarios are capped, or null; callers hold this test's lock
+     */
+    ScenarioSample getScenarioSample() {
+        return sample;
+    }
+
+    public synchronized SortedSet<Scenario> getScenarios() {
         if (scenarios == null) {
             this.scenarios = new TreeSet<>();
         }
@@ -71,11 +113,87 @@ class ExecutedTest implements Comparable<ExecutedTest> {
      *
      * @param scenarios Collection of Scenarios
      */
-    void addScenarios(Collection<Scenario> scenarios) {
+    synchronized void addScenarios(Collection<Scenario> scenarios) {
         getScenarios().addAll(scenarios);
     }
 
-    int getScenarioCount() {
+    /***
+     * Record the elapsed time of one execution of the test, and of the scenario it executed
+     * @param scenario Scenario executed, or null
+     * @param elapsedNanos Non-negative elapsed time, in nanoseconds
+     */
+    synchronized void recordElapsed(Scenario scenario, long elapsedNanos) {
+        if (timing == null) {
+            timing = LatencyHistogram.getInstance();
+        }
+        timing.record(elapsedNanos);
+        if (scenario != null && (sample == null || getScenarios().contains(scenario))) {
+            if (scenarioTimings == null) {
+                scenarioTimings = new HashMap<>();
+            }
+            scenarioTimings.computeIfAbsent(scenario, executed -> LatencyHistogram.getInstance()).record(elapsedNanos);
+        }
+    }
+
+    /***
+     * Add the timed executions of the test, or of one of its scenarios, e.g. as read from a binary report
+     * @param scenario Scenario executed, or null to add to the timing of the test itself
+     * @param elapsed LatencyHistogram of the executions
+     */
+    synchronized void addTiming(Scenario scenario, LatencyHistogram elapsed) {
+        if (scenario == null) {
+            if (timing == null) {
+                timing = LatencyHistogram.getInstance();
+            }
+            timing.add(elapsed);
+            return;
+        }
+        if (scenarioTimings == null) {
+            scenarioTimings = new HashMap<>();
+        }
+        scenarioTimings.computeIfAbsent(scenario, executed -> LatencyHistogram.getInstance()).add(elapsed);
+    }
+
+    /***
+     * @return LatencyHistogram of the timed executions of the test, or null if none were timed
+     */
+    synchronized LatencyHistogram getTiming() {
+        return timing;
+    }
+
+    /***
+     * @param scenario Scenario of the test
+     * @return LatencyHistogram of the timed executions of the scenario, or null if none were timed
+     */
+    synchronized LatencyHistogram getTiming(Scenario scenario) {
+        return scenarioTimings == null ? null : scenarioTimings.get(scenario);
+    }
+
+    /***
+     * Include the test in a rendered fragment of a report (its subject, or a requirement it covers)
+     * @param fragment RenderedFragment to invalidate when the test changes
+     */
+    synchronized void addFragment(RenderedFragment fragment) {
+        fragments = fragments == null ? new RenderedFragment[1] : Arrays.copyOf(fragments, fragments.length + 1);
+        fragments[fragments.length - 1] = fragment;
+    }
+
+    /***
+     * Mark every rendered fragment including the test stale, after its scenarios or timing changed
+     */
+    void invalidateFragments() {
+        RenderedFragment[] including;
+        synchronized (this) {
+            including = fragments;
+        }
+        if (including != null) {
+            for (RenderedFragment fragment : including) {
+                fragment.invalidate();
+            }
+        }
+    }
+
+    synchronized int getScenarioCount() {
         return scenarios == null ? 0 : scenarios.size();
     }
 
@@ -114,14 +232,46 @@ class ExecutedTest implements Comparable<ExecutedTest> {
     }
 
     @Override
-    public String toString() {
-        Gson gson = new GsonBuilder()
-                .registerTypeHierarchyAdapter(SortedSet.class, new SortedSetSerializer())
-                .create();
-        return gson.toJson(this);
+    public synchronized String toString() {
+        return CoverageJson.toJson(this);
+    }
+
+    /***
+     * Stream the JSON of this test, as returned by toString(), to a JsonWriter
+     * @param out JsonWriter to which the test is written
+     * @throws IOException if the test cannot be written
+     */
+    synchronized void writeTo(JsonWriter out) throws IOException {
+        CoverageJson.writeTest(out, this);
     }
 
     String getSubject() {
         return subject;
     }
+
+    String getTestName() {
+        return test;
+    }
+
+    Integer getVerificationCount() {
+        return verificationCount;
+    }
+
+    /***
+     * @return SortedSet of scenarios, or null when none has been added; callers hold this test's lock
+     */
+    SortedSet<Scenario> getRecordedScenarios() {
+        return scenarios;
+    }
+
+    /***
+     * @return int id assigned by the CoverageReport in which the test is registered, or -1
+     */
+    int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
 }
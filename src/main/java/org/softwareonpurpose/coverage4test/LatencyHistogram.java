@@ -0,0 +1,203 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Log-linear histogram of elapsed nanoseconds: each power of two is split into 8 buckets, so percentiles
+ * are within 12.5% of the recorded values, and the maximum is exact.  Counts are held in an int array
+ * spanning only the buckets recorded so far, which grows rarely, so recording does not allocate.
+ * Not thread-safe; guarded by the ExecutedTest that owns it.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private int[] counts;
+    private int firstBucket;
+    private long count;
+    private long max;
+
+    private LatencyHistogram() {
+    }
+
+    static LatencyHistogram getInstance() {
+        return new LatencyHistogram();
+    }
+
+    /***
+     * Rebuild a histogram from its buckets, e.g. as read from a binary report
+     * @param firstBucket Index of the first bucket, as returned by getFirstBucket()
+     * @param counts Counts of consecutive buckets, as returned by getBucketCounts()
+     * @param max Maximum value recorded
+     * @return LatencyHistogram instance
+     */
+    static LatencyHistogram getInstance(int firstBucket, int[] counts, long max) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        if (counts.length > 0) {
+            histogram.counts = counts.clone();
+            histogram.firstBucket = firstBucket;
+            for (int bucketCount : counts) {
+                histogram.count += bucketCount;
+            }
+            histogram.max = max;
+        }
+        return histogram;
+    }
+
+    /***
+     * @param elapsedNanos Non-negative elapsed time, in nanoseconds
+     */
+    void record(long elapsedNanos) {
+        int bucket = bucketOf(elapsedNanos);
+        if (counts == null) {
+            counts = new int[SUB_BUCKETS];
+            firstBucket = bucket;
+        } else if (bucket < firstBucket || bucket >= firstBucket + counts.length) {
+            grow(bucket);
+        }
+        counts[bucket - firstBucket]++;
+        count++;
+        max = Math.max(max, elapsedNanos);
+    }
+
+    /***
+     * Add every value recorded by another histogram
+     * @param other LatencyHistogram whose values are added
+     */
+    void add(LatencyHistogram other) {
+        if (other.counts == null) {
+            return;
+        }
+        for (int index = 0; index < other.counts.length; index++) {
+            int bucketCount = other.counts[index];
+            if (bucketCount == 0) {
+                continue;
+            }
+            int bucket = other.firstBucket + index;
+            if (counts == null) {
+                counts = new int[SUB_BUCKETS];
+                firstBucket = bucket;
+            } else if (bucket < firstBucket || bucket >= firstBucket + counts.length) {
+                grow(bucket);
+            }
+            counts[bucket - firstBucket] += bucketCount;
+        }
+        count += other.count;
+        max = Math.max(max, other.max);
+    }
+
+    /***
+     * @return int index of the first bucket of getBucketCounts()
+     */
+    int getFirstBucket() {
+        if (counts == null) {
+            return 0;
+        }
+        int first = 0;
+        while (first < counts.length && counts[first] == 0) {
+            first++;
+        }
+        return first == counts.length ? 0 : firstBucket + first;
+    }
+
+    /***
+     * @return int[] counts of the buckets from getFirstBucket() to the last non-empty bucket
+     */
+    int[] getBucketCounts() {
+        if (counts == null) {
+            return new int[0];
+        }
+        int first = 0;
+        while (first < counts.length && counts[first] == 0) {
+            first++;
+        }
+        int last = counts.length;
+        while (last > first && counts[last - 1] == 0) {
+            last--;
+        }
+        return Arrays.copyOfRange(counts, first, last);
+    }
+
+    private void grow(int bucket) {
+        int first = Math.min(firstBucket, bucket);
+        int last = Math.max(firstBucket + counts.length, bucket + 1);
+        int[] grown = new int[Math.max(last - first, counts.length * 2)];
+        System.arraycopy(counts, 0, grown, firstBucket - first, counts.length);
+        counts = grown;
+        firstBucket = first;
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    /***
+     * @param percentile Percentile, from 0 to 100
+     * @return long highest value of the bucket holding the percentile, capped at the maximum recorded
+     */
+    long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int index = 0; index < counts.length; index++) {
+            seen += counts[index];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(firstBucket + index), max);
+            }
+        }
+        return max;
+    }
+
+    /***
+     * Write the count, p50, p99 and max, in nanoseconds, as a JSON object
+     * @param out JsonWriter to which the summary is written
+     * @throws IOException if the summary cannot be written
+     */
+    void writeTo(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("count").value(count);
+        out.name("p50Nanos").value(getPercentile(50));
+        out.name("p99Nanos").value(getPercentile(99));
+        out.name("maxNanos").value(max);
+        out.endObject();
+    }
+}
@@ -0,0 +1,201 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Coverage entries appended by every test JVM on a host to one shared memory-mapped file, so that forks
+ * need not each write a report to be merged.  A writer reserves space for a record by atomically adding
+ * its size to the tail held in the file's header, writes the record's checksum and EntryCodec encoding,
+ * then publishes its length with release semantics.  Readers take only published records whose checksum
+ * matches, so a collection can be read during the run, and records abandoned by a killed fork are skipped.
+ * The file is sized once (sparse, so only written pages use disk); entries that do not fit are dropped.
+ */
+class MappedCoverageCollector implements EntrySink {
+    private static final byte[] MAGIC = {'C', '4', 'T', 'M'};
+    private static final int VERSION = 1;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int TAIL_OFFSET = 16;
+    private static final int DATA_OFFSET = 64;
+    private static final int RECORD_HEADER_LENGTH = 2 * Integer.BYTES;
+    private static final int RECORD_ALIGNMENT = Long.BYTES;
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final ThreadLocal<EntryCodec> CODEC = ThreadLocal.withInitial(EntryCodec::getInstance);
+    private static final ConcurrentMap<Path, Object> OPENING = new ConcurrentHashMap<>();
+    private final MappedByteBuffer buffer;
+    private final long capacity;
+    private final LongAdder dropped = new LongAdder();
+
+    private MappedCoverageCollector(MappedByteBuffer buffer, long capacity) {
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /***
+     * Open a shared collection for appending, creating it with the given capacity if no fork has yet.  The
+     * file lock is held per JVM, so opens of the same file within this JVM take turns on a monitor first.
+     * @param path Path of the collection file
+     * @param capacity Bytes of the file, used only when creating it; at most Integer.MAX_VALUE
+     * @return MappedCoverageCollector instance
+     * @throws IOException if the file cannot be created or mapped, or is not a collection
+     */
+    static MappedCoverageCollector open(Path path, long capacity) throws IOException {
+        if (capacity <= DATA_OFFSET || capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Collector capacity %d is out of range", capacity));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size;
+            synchronized (OPENING.computeIfAbsent(path.toRealPath(), opened -> new Object())) {
+                FileLock lock = channel.lock();
+                try {
+                    if (channel.size() == 0) {
+                        channel.write(ByteBuffer.wrap(new byte[]{0}), capacity - 1);
+                        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET);
+                        header.put(0, MAGIC);
+                        INT.set(header, VERSION_OFFSET, VERSION);
+                        LONG.set(header, CAPACITY_OFFSET, capacity);
+                        LONG.setRelease(header, TAIL_OFFSET, (long) DATA_OFFSET);
+                        header.force();
+                    }
+                    size = checkHeader(channel, path);
+                } finally {
+                    lock.release();
+                }
+            }
+            return new MappedCoverageCollector(channel.map(FileChannel.MapMode.READ_WRITE, 0, size), size);
+        }
+    }
+
+    private static long checkHeader(FileChannel channel, Path path) throws IOException {
+        long size = channel.size();
+        if (size >= DATA_OFFSET) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, DATA_OFFSET);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(0, magic);
+            if (Arrays.equals(magic, MAGIC) && (int) INT.get(header, VERSION_OFFSET) == VERSION
+                    && (long) LONG.get(header, CAPACITY_OFFSET) == size) {
+                return size;
+            }
+        }
+        throw new IOException(String.format("%s is not a coverage collection", path));
+    }
+
+    /***
+     * Append an entry; safe to call from any thread of any process sharing the file
+     * @return boolean whether the entry was appended, rather than dropped because the file is full
+     */
+    @Override
+    public boolean append(String testName, String subject, Integer verificationCount, Scenario scenario, long elapsedNanos,
+                   String... requirements) {
+        EntryCodec codec = CODEC.get();
+        int length = codec.encode(testName, subject, verificationCount, scenario, elapsedNanos, requirements);
+        long size = align(RECORD_HEADER_LENGTH + (long) length);
+        long offset = (long) LONG.getAndAdd(buffer, TAIL_OFFSET, size);
+        if (offset + size > capacity) {
+            dropped.increment();
+            return false;
+        }
+        int position = (int) offset;
+        CRC32C checksum = new CRC32C();
+        checksum.update(codec.getBuffer(), 0, length);
+        buffer.put(position + RECORD_HEADER_LENGTH, codec.getBuffer(), 0, length);
+        INT.set(buffer, position + Integer.BYTES, (int) checksum.getValue());
+        INT.setRelease(buffer, position, length);
+        return true;
+    }
+
+    /***
+     * @return long count of entries dropped by this process because the file was full
+     */
+    @Override
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /***
+     * Read every published record of a collection, in the order space was reserved for them
+     * @param path Path of the collection file
+     * @param sink Receives each entry
+     * @throws IOException if the file cannot be read, or is not a collection
+     */
+    static void read(Path path, Consumer<CoverageEntry> sink) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, checkHeader(channel, path));
+        }
+        long tail = Math.min((long) LONG.getAcquire(buffer, TAIL_OFFSET), buffer.capacity());
+        CRC32C checksum = new CRC32C();
+        byte[] record = new byte[256];
+        long position = DATA_OFFSET;
+        while (position + RECORD_HEADER_LENGTH <= tail) {
+            int index = (int) position;
+            int length = (int) INT.getAcquire(buffer, index);
+            if (length <= 0 || position + RECORD_HEADER_LENGTH + length > tail) {
+                position += RECORD_ALIGNMENT;
+                continue;
+            }
+            if (record.length < length) {
+                record = new byte[length];
+            }
+            buffer.get(index + RECORD_HEADER_LENGTH, record, 0, length);
+            checksum.reset();
+            checksum.update(record, 0, length);
+            if ((int) checksum.getValue() != (int) INT.get(buffer, index + Integer.BYTES)) {
+                position += RECORD_ALIGNMENT;
+                continue;
+            }
+            CoverageEntry entry;
+            try {
+                entry = EntryCodec.decode(ByteBuffer.wrap(record, 0, length));
+            } catch (IllegalArgumentException e) {
+                position += RECORD_ALIGNMENT;
+                continue;
+            }
+            sink.accept(entry);
+            position += align(RECORD_HEADER_LENGTH + (long) length);
+        }
+    }
+
+    private static long align(long size) {
+        return (size + RECORD_ALIGNMENT - 1) & -RECORD_ALIGNMENT;
+    }
+
+    /***
+     * Force appended records to the file; the mapping itself is released when collected, so entries
+     * appended after close are still accepted, and reach the file when the OS writes the page back
+     */
+    @Override
+    public void close() {
+        buffer.force();
+    }
+}
@@ -0,0 +1,28 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Streams the tests of one section of a report, in report order (requirement, subject, test)
+ */
+interface RecordCursor extends Closeable {
+    /***
+     * @return CoverageRecord of the next test, or null when the section is exhausted
+     * @throws IOException if the report cannot be read
+     */
+    CoverageRecord next() throws IOException;
+}
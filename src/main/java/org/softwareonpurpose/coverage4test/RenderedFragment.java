@@ -0,0 +1,91 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * JSON of one part of a report (a subject or a requirement), kept until a test it includes changes, so
+ * that rendering a report again only re-renders the parts that changed since it was last rendered.
+ * Changes mark the fragment stale after they are made, and rendering clears the mark before it reads
+ * the tests, so a change made during rendering is never lost.
+ */
+class RenderedFragment {
+    private volatile boolean stale = true;
+    private volatile String json;
+
+    private RenderedFragment() {
+    }
+
+    static RenderedFragment getInstance() {
+        return new RenderedFragment();
+    }
+
+    void invalidate() {
+        stale = true;
+    }
+
+    /***
+     * Write the fragment, from its cached JSON if not stale
+     * @param out JsonWriter to which the fragment is written
+     * @param renderer Renders the fragment when stale
+     * @throws IOException if the fragment cannot be written
+     */
+    void writeTo(JsonWriter out, Renderer renderer) throws IOException {
+        out.jsonValue(getJson(renderer));
+    }
+
+    /***
+     * @param renderer Renders the fragment when stale
+     * @return String JSON of the fragment, cached unless stale
+     * @throws IOException if the fragment cannot be rendered
+     */
+    String getJson(Renderer renderer) throws IOException {
+        String rendered = json;
+        return stale || rendered == null ? refresh(renderer) : rendered;
+    }
+
+    private synchronized String refresh(Renderer renderer) throws IOException {
+        if (!stale && json != null) {
+            return json;
+        }
+        stale = false;
+        json = render(renderer);
+        return json;
+    }
+
+    /***
+     * Render JSON without caching it
+     * @param renderer Renders the JSON
+     * @return String JSON rendered
+     * @throws IOException if the JSON cannot be rendered
+     */
+    static String render(Renderer renderer) throws IOException {
+        StringWriter rendered = new StringWriter();
+        JsonWriter out = new JsonWriter(rendered);
+        renderer.writeTo(out);
+        out.flush();
+        return rendered.toString();
+    }
+
+    /**
+     * Writes JSON of a part of a report
+     */
+    interface Renderer {
+        void writeTo(JsonWriter json) throws IOException;
+    }
+}
@@ -0,0 +1,293 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams the tests of a JSON report, one CoverageRecord at a time, without parsing the report into memory.
+ * Reads a standalone report as written by getSystemCoverage()/getRequirementsCoverage(), or a complete report
+ * as written by toString(), either restricted to one coverage section (system or requirements) or reading every
+ * section in document order.  Within a section, records must arrive in report order (requirement, subject,
+ * test), as CoverageReport writes them.
+ */
+class ReportCursor implements RecordCursor {
+    private static final String COVERAGE_REPORT_ELEMENT_NAME = "coverageReport";
+    private final JsonReader reader;
+    private final String source;
+    private final String coverageType;
+    private boolean wrapped;
+    private boolean requirementsCoverage;
+    private State state = State.DONE;
+    private String requirement;
+    private String subject;
+    private CoverageRecord previous;
+
+    private enum State {REQUIREMENTS, SUBJECTS, TESTS, SECTION_END, NEXT_SECTION, DONE}
+
+    private ReportCursor(Reader reader, String source, String coverageType) {
+        this.reader = new JsonReader(reader);
+        this.source = source;
+        this.coverageType = coverageType;
+    }
+
+    /***
+     * @param reader Reader of a JSON report; closed with the cursor
+     * @param source Description of the report (e.g. its file name) for error messages
+     * @param coverageType "system" or "requirements", or null for every section of the report
+     * @return ReportCursor positioned before the first test; empty if the report lacks the section
+     * @throws IOException if the report cannot be read or is not a coverage report
+     */
+    static ReportCursor open(Reader reader, String source, String coverageType) throws IOException {
+        ReportCursor cursor = new ReportCursor(reader, source, coverageType);
+        try {
+            cursor.seekFirstSection();
+        } catch (IOException | RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+        return cursor;
+    }
+
+    /***
+     * @return CoverageRecord of the next test, or null at the end of the report; records of system coverage
+     * have no requirement
+     * @throws IOException if the report cannot be read, is malformed, or is out of order
+     */
+    @Override
+    public CoverageRecord next() throws IOException {
+        try {
+            while (true) {
+                switch (state) {
+                    case TESTS:
+                        if (reader.hasNext()) {
+                            return checkOrder(readTest());
+                        }
+                        reader.endArray();
+                        skipRemainder();
+                        state = State.SUBJECTS;
+                        break;
+                    case SUBJECTS:
+                        if (reader.hasNext()) {
+                            subject = readName("subject", "tests");
+                            state = State.TESTS;
+                        } else {
+                            reader.endArray();
+                            if (requirementsCoverage) {
+                                skipRemainder();
+                                state = State.REQUIREMENTS;
+                            } else {
+                                state = State.SECTION_END;
+                            }
+                        }
+                        break;
+                    case REQUIREMENTS:
+                        if (reader.hasNext()) {
+                            requirement = readName("requirement", "subjects");
+                            state = State.SUBJECTS;
+                        } else {
+                            reader.endArray();
+                            state = State.SECTION_END;
+                        }
+                        break;
+                    case SECTION_END:
+                        skipRemainder();
+                        state = State.NEXT_SECTION;
+                        break;
+                    case NEXT_SECTION:
+                        seekNextSection();
+                        break;
+                    default:
+                        return null;
+                }
+            }
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException(String.format("%s is not a valid coverage report: %s", source, e.getMessage()), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void seekFirstSection() throws IOException {
+        reader.beginObject();
+        if (!reader.hasNext()) {
+            return;
+        }
+        String name = reader.nextName();
+        if (COVERAGE_REPORT_ELEMENT_NAME.equals(name)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("reports".equals(reader.nextName())) {
+                    reader.beginArray();
+                    wrapped = true;
+                    state = State.NEXT_SECTION;
+                    return;
+                }
+                reader.skipValue();
+            }
+        } else if (CoverageReport.COVERAGE_ELEMENT_NAME.equals(name)) {
+            String type = reader.nextString();
+            if (isSought(type)) {
+                enterSection(type);
+            }
+        } else {
+            throw new IOException(String.format("%s is not a coverage report", source));
+        }
+    }
+
+    /***
+     * Within the reports of a complete report, position the cursor in the next section sought, if any
+     */
+    private void seekNextSection() throws IOException {
+        state = State.DONE;
+        if (!wrapped) {
+            return;
+        }
+        while (reader.hasNext()) {
+            reader.beginObject();
+            if (reader.hasNext()) {
+                if (CoverageReport.COVERAGE_ELEMENT_NAME.equals(reader.nextName())) {
+                    String type = reader.nextString();
+                    if (isSought(type)) {
+                        enterSection(type);
+                        return;
+                    }
+                } else {
+                    reader.skipValue();
+                }
+            }
+            skipRemainder();
+        }
+    }
+
+    private boolean isSought(String type) {
+        boolean isKnown = CoverageReport.COVERAGE_TYPE_SYSTEM.equals(type) || CoverageReport.COVERAGE_TYPE_REQUIREMENTS.equals(type);
+        return isKnown && (coverageType == null || coverageType.equals(type));
+    }
+
+    /***
+     * Having read the coverage type of a report object, position the cursor inside its array of elements
+     */
+    private void enterSection(String type) throws IOException {
+        requirementsCoverage = CoverageReport.COVERAGE_TYPE_REQUIREMENTS.equals(type);
+        requirement = null;
+        previous = null;
+        String elements = requirementsCoverage ? "requirements" : "subjects";
+        while (reader.hasNext()) {
+            if (elements.equals(reader.nextName())) {
+                reader.beginArray();
+                state = requirementsCoverage ? State.REQUIREMENTS : State.SUBJECTS;
+                return;
+            }
+            reader.skipValue();
+        }
+        reader.endObject();
+        state = State.NEXT_SECTION;
+    }
+
+    /***
+     * Read an object of the form {"requirement":name,"subjects":[ or {"subject":name,"tests":[,
+     * leaving the reader inside its array
+     */
+    private String readName(String nameElement, String arrayElement) throws IOException {
+        reader.beginObject();
+        String name = null;
+        while (reader.hasNext()) {
+            String element = reader.nextName();
+            if (nameElement.equals(element)) {
+                name = reader.nextString();
+            } else if (arrayElement.equals(element)) {
+                if (name == null) {
+                    throw new IOException(String.format("%s lists %s before %s", source, arrayElement, nameElement));
+                }
+                reader.beginArray();
+                return name;
+            } else {
+                reader.skipValue();
+            }
+        }
+        throw new IOException(String.format("%s has a %s without %s", source, nameElement, arrayElement));
+    }
+
+    private CoverageRecord readTest() throws IOException {
+        reader.beginObject();
+        String testName = null;
+        Integer verificationCount = null;
+        List<Scenario> scenarios = null;
+        while (reader.hasNext()) {
+            String element = reader.nextName();
+            if ("test".equals(element)) {
+                testName = reader.nextString();
+            } else if ("verificationCount".equals(element) && reader.peek() != JsonToken.NULL) {
+                verificationCount = reader.nextInt();
+            } else if ("scenarios".equals(element) && reader.peek() != JsonToken.NULL) {
+                scenarios = readScenarios();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (testName == null) {
+            throw new IOException(String.format("%s has a test without a name", source));
+        }
+        return CoverageRecord.getInstance(requirement, subject, testName, verificationCount, scenarios);
+    }
+
+    private List<Scenario> readScenarios() throws IOException {
+        List<Scenario> scenarios = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            Scenario scenario = Scenario.getInstance(null);
+            while (reader.hasNext()) {
+                if ("scenario".equals(reader.nextName())) {
+                    scenario = Scenario.fromJson(JsonParser.parseReader(reader));
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            scenarios.add(scenario);
+        }
+        reader.endArray();
+        return scenarios;
+    }
+
+    private CoverageRecord checkOrder(CoverageRecord record) throws IOException {
+        if (previous != null && CoverageRecord.REPORT_ORDER.compare(previous, record) > 0) {
+            throw new IOException(String.format("%s is not sorted: %s/%s follows %s/%s", source,
+                    record.getSubject(), record.getTestName(), previous.getSubject(), previous.getTestName()));
+        }
+        previous = record;
+        return record;
+    }
+
+    private void skipRemainder() throws IOException {
+        while (reader.hasNext()) {
+            reader.nextName();
+            reader.skipValue();
+        }
+        reader.endObject();
+    }
+}
@@ -0,0 +1,239 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catalog of every requirement a product defines, whether or not a test covers it, for gap analysis.
+ * Each requirement is numbered densely in catalog order, so sets of requirements (covered, uncovered,
+ * covered by one subject) are bitsets of those numbers, and set algebra between them, or between runs,
+ * is word-at-a-time.
+ */
+public final class RequirementCatalog {
+    private static final String COMMENT = "#";
+    private final String[] requirements;
+    private final Map<String, Integer> ids;
+
+    private RequirementCatalog(List<String> requirements) {
+        this.ids = new HashMap<>(requirements.size() * 2);
+        List<String> distinct = new ArrayList<>(requirements.size());
+        for (String requirement : requirements) {
+            if (requirement != null && !requirement.isBlank() && ids.putIfAbsent(requirement, distinct.size()) == null) {
+                distinct.add(requirement);
+            }
+        }
+        this.requirements = distinct.toArray(new String[0]);
+    }
+
+    /***
+     * @param requirements Requirement IDs, in catalog order; blank and repeated IDs are ignored
+     * @return RequirementCatalog instance
+     */
+    public static RequirementCatalog getInstance(Collection<String> requirements) {
+        return new RequirementCatalog(new ArrayList<>(requirements));
+    }
+
+    /***
+     * Read a catalog of one requirement ID per line; blank lines, and lines starting with #, are ignored
+     * @param reader Reader of the catalog; read to its end, but not closed
+     * @return RequirementCatalog instance
+     * @throws IOException if the catalog cannot be read
+     */
+    public static RequirementCatalog load(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        List<String> requirements = new ArrayList<>();
+        String line;
+        while ((line = lines.readLine()) != null) {
+            String requirement = line.strip();
+            if (!requirement.startsWith(COMMENT)) {
+                requirements.add(requirement);
+            }
+        }
+        return new RequirementCatalog(requirements);
+    }
+
+    /***
+     * Read a UTF-8 catalog file; see load(Reader)
+     * @param path Path of the catalog
+     * @return RequirementCatalog instance
+     * @throws IOException if the catalog cannot be read
+     */
+    public static RequirementCatalog load(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    /***
+     * @return int number of requirements in the catalog
+     */
+    public int size() {
+        return requirements.length;
+    }
+
+    /***
+     * @return List of the requirements, in catalog order
+     */
+    public List<String> getRequirements() {
+        return Collections.unmodifiableList(Arrays.asList(requirements));
+    }
+
+    /***
+     * @param requirements Requirement IDs; those not in the catalog are ignored
+     * @return RequirementSet of the requirements
+     */
+    public RequirementSet getSet(Collection<String> requirements) {
+        BitSet members = new BitSet(this.requirements.length);
+        for (String requirement : requirements) {
+            Integer id = ids.get(requirement);
+            if (id != null) {
+                members.set(id);
+            }
+        }
+        return new RequirementSet(this, members);
+    }
+
+    /***
+     * Analyze the requirements covered by a report against the catalog
+     * @param report CoverageReport of a run
+     * @return CatalogCoverage of the catalog by the report
+     */
+    public CatalogCoverage getCoverage(CoverageReport report) {
+        BitSet covered = new BitSet(requirements.length);
+        BitSet singleSubject = new BitSet(requirements.length);
+        List<String> uncatalogued = new ArrayList<>();
+        for (RequirementsIndex.Requirement requirement : report.getCoveredRequirements()) {
+            add(requirement.getName(), requirement.getSubjectCount(), covered, singleSubject, uncatalogued);
+        }
+        return new CatalogCoverage(this, covered, singleSubject, uncatalogued);
+    }
+
+    /***
+     * Analyze the requirements covered by an indexed report against the catalog
+     * @param index CoverageIndex of a run
+     * @return CatalogCoverage of the catalog by the indexed report
+     */
+    public CatalogCoverage getCoverage(CoverageIndex index) {
+        BitSet covered = new BitSet(requirements.length);
+        BitSet singleSubject = new BitSet(requirements.length);
+        List<String> uncatalogued = new ArrayList<>();
+        for (String requirement : index.getRequirements()) {
+            add(requirement, index.getSubjectsCovering(requirement).size(), covered, singleSubject, uncatalogued);
+        }
+        return new CatalogCoverage(this, covered, singleSubject, uncatalogued);
+    }
+
+    private void add(String requirement, int subjectCount, BitSet covered, BitSet singleSubject, List<String> uncatalogued) {
+        Integer id = ids.get(requirement);
+        if (id == null) {
+            uncatalogued.add(requirement);
+            return;
+        }
+        covered.set(id);
+        if (subjectCount == 1) {
+            singleSubject.set(id);
+        }
+    }
+
+    /***
+     * @param requirement Requirement ID
+     * @return int catalog number of the requirement, or -1 if it is not in the catalog
+     */
+    int getId(String requirement) {
+        Integer id = ids.get(requirement);
+        return id == null ? -1 : id;
+    }
+
+    String getRequirement(int id) {
+        return requirements[id];
+    }
+
+    /**
+     * Coverage of a catalog by one run
+     */
+    public static final class CatalogCoverage {
+        private final RequirementCatalog catalog;
+        private final BitSet covered;
+        private final BitSet singleSubject;
+        private final List<String> uncatalogued;
+
+        private CatalogCoverage(RequirementCatalog catalog, BitSet covered, BitSet singleSubject, List<String> uncatalogued) {
+            this.catalog = catalog;
+            this.covered = covered;
+            this.singleSubject = singleSubject;
+            this.uncatalogued = Collections.unmodifiableList(uncatalogued);
+        }
+
+        /***
+         * @return RequirementSet of the catalog's requirements covered by at least one test
+         */
+        public RequirementSet getCovered() {
+            return new RequirementSet(catalog, (BitSet) covered.clone());
+        }
+
+        /***
+         * @return RequirementSet of the catalog's requirements no test covers
+         */
+        public RequirementSet getUncovered() {
+            BitSet uncovered = new BitSet(catalog.size());
+            uncovered.set(0, catalog.size());
+            uncovered.andNot(covered);
+            return new RequirementSet(catalog, uncovered);
+        }
+
+        /***
+         * @return RequirementSet of the catalog's requirements covered by the tests of only one subject
+         */
+        public RequirementSet getCoveredBySingleSubject() {
+            return new RequirementSet(catalog, (BitSet) singleSubject.clone());
+        }
+
+        /***
+         * @return List of the requirements covered by the run but missing from the catalog, sorted by name
+         */
+        public List<String> getUncatalogued() {
+            return uncatalogued;
+        }
+
+        /***
+         * @param previous CatalogCoverage of an earlier run, against the same catalog
+         * @return RequirementSet of the requirements covered now but not by the earlier run
+         */
+        public RequirementSet getNewlyCovered(CatalogCoverage previous) {
+            return getCovered().andNot(previous.getCovered());
+        }
+
+        /***
+         * @param previous CatalogCoverage of an earlier run, against the same catalog
+         * @return RequirementSet of the requirements covered by the earlier run but not now
+         */
+        public RequirementSet getNoLongerCovered(CatalogCoverage previous) {
+            return previous.getCovered().andNot(getCovered());
+        }
+    }
+}
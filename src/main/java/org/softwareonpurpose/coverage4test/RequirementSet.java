@@ -0,0 +1,108 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Immutable set of requirements of a RequirementCatalog, held as a bitset of their catalog numbers
+ */
+public final class RequirementSet {
+    private final RequirementCatalog catalog;
+    private final BitSet members;
+
+    RequirementSet(RequirementCatalog catalog, BitSet members) {
+        this.catalog = catalog;
+        this.members = members;
+    }
+
+    /***
+     * @return int number of requirements in the set
+     */
+    public int size() {
+        return members.cardinality();
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    /***
+     * @param requirement Requirement ID
+     * @return boolean whether the requirement is in the set
+     */
+    public boolean contains(String requirement) {
+        int id = catalog.getId(requirement);
+        return id >= 0 && members.get(id);
+    }
+
+    /***
+     * @param other RequirementSet of the same catalog
+     * @return RequirementSet of the requirements in both sets
+     */
+    public RequirementSet and(RequirementSet other) {
+        BitSet result = copyFor(other);
+        result.and(other.members);
+        return new RequirementSet(catalog, result);
+    }
+
+    /***
+     * @param other RequirementSet of the same catalog
+     * @return RequirementSet of the requirements in either set
+     */
+    public RequirementSet or(RequirementSet other) {
+        BitSet result = copyFor(other);
+        result.or(other.members);
+        return new RequirementSet(catalog, result);
+    }
+
+    /***
+     * @param other RequirementSet of the same catalog
+     * @return RequirementSet of the requirements in this set but not the other
+     */
+    public RequirementSet andNot(RequirementSet other) {
+        BitSet result = copyFor(other);
+        result.andNot(other.members);
+        return new RequirementSet(catalog, result);
+    }
+
+    /***
+     * @return Stream of the requirements, in catalog order
+     */
+    public Stream<String> stream() {
+        return members.stream().mapToObj(catalog::getRequirement);
+    }
+
+    /***
+     * @return List of the requirements, in catalog order
+     */
+    public List<String> getRequirements() {
+        return stream().collect(Collectors.toList());
+    }
+
+    @Override
+    public String toString() {
+        return getRequirements().toString();
+    }
+
+    private BitSet copyFor(RequirementSet other) {
+        if (other.catalog != catalog) {
+            throw new IllegalArgumentException("Requirement sets are of different catalogs");
+        }
+        return (BitSet) members.clone();
+    }
+}
@@ -0,0 +1,229 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Inverted index of requirements to the tests covering them.  Each requirement is interned once, with a
+ * dense int id, and holds the int ids of its tests grouped by subject and sorted by test name, so a
+ * requirement is found with one hash lookup and its tests are rendered without re-grouping.
+ */
+class RequirementsIndex {
+    private final Map<String, Requirement> lookup;
+    private final SortedMap<String, Requirement> requirements;
+    private final AtomicInteger requirementCount = new AtomicInteger();
+    private final LongAdder nameLength = new LongAdder();
+    private final IntFunction<ExecutedTest> tests;
+
+    private RequirementsIndex(boolean concurrent, IntFunction<ExecutedTest> tests) {
+        this.lookup = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.requirements = concurrent ? new ConcurrentSkipListMap<>() : new TreeMap<>();
+        this.tests = tests;
+    }
+
+    /***
+     * @param concurrent Whether links are added from multiple threads
+     * @param tests Resolves a test id to its ExecutedTest
+     * @return RequirementsIndex instance
+     */
+    static RequirementsIndex getInstance(boolean concurrent, IntFunction<ExecutedTest> tests) {
+        return new RequirementsIndex(concurrent, tests);
+    }
+
+    /***
+     * Link a test to a requirement; linking the same test again has no effect
+     * @param requirement Requirement covered by the test
+     * @param test Registered ExecutedTest
+     * @return boolean whether the test was not already linked to the requirement
+     */
+    boolean link(String requirement, ExecutedTest test) {
+        Requirement entry = lookup.get(requirement);
+        if (entry == null) {
+            entry = lookup.computeIfAbsent(requirement, this::newRequirement);
+            requirements.putIfAbsent(entry.name, entry);
+        }
+        return entry.add(test);
+    }
+
+    private Requirement newRequirement(String name) {
+        nameLength.add(name.length());
+        return new Requirement(name, requirementCount.getAndIncrement(), tests);
+    }
+
+    /***
+     * @return long total length of the requirement names
+     */
+    long getNameLength() {
+        return nameLength.sum();
+    }
+
+    /***
+     * Release every requirement and link, e.g. once they were spilled; the name length is kept
+     */
+    void clear() {
+        lookup.clear();
+        requirements.clear();
+        requirementCount.set(0);
+    }
+
+    boolean isEmpty() {
+        return requirements.isEmpty();
+    }
+
+    int size() {
+        return requirements.size();
+    }
+
+    /***
+     * @return Requirements sorted by name
+     */
+    Collection<Requirement> getRequirements() {
+        return requirements.values();
+    }
+
+    /**
+     * A requirement and the ids of the tests covering it, grouped by subject
+     */
+    static class Requirement {
+        private final String name;
+        private final int id;
+        private final IntFunction<ExecutedTest> tests;
+        private final SortedMap<String, TestPostings> subjects = new TreeMap<>();
+        private final RenderedFragment fragment = RenderedFragment.getInstance();
+
+        private Requirement(String name, int id, IntFunction<ExecutedTest> tests) {
+            this.name = name;
+            this.id = id;
+            this.tests = tests;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getId() {
+            return id;
+        }
+
+        private boolean add(ExecutedTest test) {
+            synchronized (this) {
+                if (!subjects.computeIfAbsent(test.getSubject(), subject -> new TestPostings()).add(test, tests)) {
+                    return false;
+                }
+            }
+            test.addFragment(fragment);
+            fragment.invalidate();
+            return true;
+        }
+
+        /***
+         * @return int number of subjects with a test covering the requirement
+         */
+        synchronized int getSubjectCount() {
+            return subjects.size();
+        }
+
+        /***
+         * @return Snapshot of the test ids, sorted by test name, of each subject sorted by name
+         */
+        synchronized SortedMap<String, int[]> getSubjects() {
+            SortedMap<String, int[]> snapshot = new TreeMap<>();
+            for (Map.Entry<String, TestPostings> subject : subjects.entrySet()) {
+                snapshot.put(subject.getKey(), subject.getValue().toArray());
+            }
+            return snapshot;
+        }
+
+        /***
+         * Write the requirement and its tests, as an element of a "requirements" array
+         * @param json JsonWriter to which the requirement is written
+         * @param cached Whether to write from, and keep, the requirement's rendered JSON
+         * @throws IOException if the requirement cannot be written
+         */
+        void writeTo(JsonWriter json, boolean cached) throws IOException {
+            if (cached) {
+                fragment.writeTo(json, this::render);
+            } else {
+                render(json);
+            }
+        }
+
+        /***
+         * @param cached Whether to return, and keep, the requirement's rendered JSON
+         * @return String JSON of the requirement, as written by writeTo
+         * @throws IOException if the requirement cannot be rendered
+         */
+        String toJson(boolean cached) throws IOException {
+            return cached ? fragment.getJson(this::render) : RenderedFragment.render(this::render);
+        }
+
+        private void render(JsonWriter json) throws IOException {
+            json.beginObject().name("requirement").value(name);
+            json.name("subjects").beginArray();
+            for (Map.Entry<String, int[]> subject : getSubjects().entrySet()) {
+                json.beginObject().name("subject").value(subject.getKey()).name("tests").beginArray();
+                for (int id : subject.getValue()) {
+                    tests.apply(id).writeTo(json);
+                }
+                json.endArray().endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+    }
+
+    /**
+     * Growable array of test ids, all of one subject, kept sorted by test name
+     */
+    private static class TestPostings {
+        private int[] ids = new int[4];
+        private int size;
+
+        private boolean add(ExecutedTest test, IntFunction<ExecutedTest> tests) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = tests.apply(ids[middle]).getTestName().compareTo(test.getTestName());
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return false;
+                }
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, low, ids, low + 1, size - low);
+            ids[low] = test.getId();
+            size++;
+            return true;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
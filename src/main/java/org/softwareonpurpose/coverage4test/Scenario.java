@@ -14,12 +14,24 @@
 package org.softwareonpurpose.coverage4test;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 
 class Scenario implements Comparable {
+    private static final Gson GSON = new Gson();
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
     private final Object scenario;
+    private final transient String canonical;
+    private final transient long fingerprint;
+    private final transient boolean detailRetained;
+    private transient int id = -1;
 
-    private Scenario(Object scenario) {
+    private Scenario(Object scenario, String canonical, boolean detailRetained) {
         this.scenario = scenario;
+        this.canonical = canonical;
+        this.fingerprint = fingerprint(canonical);
+        this.detailRetained = detailRetained;
     }
 
     /***
@@ -27,7 +39,51 @@ class Scenario implements Comparable {
      * @return
      */
     public static Scenario getInstance(Object scenario) {
-        return new Scenario(scenario);
+        return new Scenario(scenario, GSON.toJson(scenario), true);
+    }
+
+    /***
+     * Capture a Scenario as its canonical JSON only, so that the test data object graph is not retained;
+     * getDetail() returns the parsed JSON
+     * @param scenario Test data object
+     * @return Scenario instance holding no reference to the test data
+     */
+    static Scenario getCapturedInstance(Object scenario) {
+        return fromJson(GSON.toJson(scenario));
+    }
+
+    /***
+     * Rebuild a Scenario from its canonical JSON (e.g. read from a journal or report); the original
+     * object is not available, so getDetail() returns the parsed JSON
+     * @param canonical JSON of the scenario detail, as returned by getCanonical()
+     * @return Scenario instance
+     */
+    static Scenario fromJson(String canonical) {
+        return new Scenario(null, canonical, false);
+    }
+
+    /***
+     * Rebuild a Scenario from its parsed JSON (e.g. the "scenario" value of a report)
+     * @param detail JsonElement of the scenario detail
+     * @return Scenario instance
+     */
+    static Scenario fromJson(JsonElement detail) {
+        return fromJson(GSON.toJson(detail));
+    }
+
+    /***
+     * 64-bit FNV-1a hash of the canonical JSON, computed once so that duplicate detection
+     * rarely needs to compare the full JSON
+     * @param json Canonical JSON of a scenario
+     * @return long hash of the JSON
+     */
+    private static long fingerprint(String json) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int index = 0; index < json.length(); index++) {
+            hash ^= json.charAt(index);
+            hash *= FNV_PRIME;
+        }
+        return hash;
     }
 
     @Override
@@ -38,19 +94,62 @@ class Scenario implements Comparable {
         if(!comparator.getClass().equals(this.getClass())){
             return -2;
         }
-        String comparatorJson;
-        Gson gson = new Gson();
-        Object comparatorScenario = ((Scenario) comparator).scenario;
-        comparatorJson = gson.toJson(comparatorScenario);
-        return gson.toJson(this.scenario).compareTo(comparatorJson);
+        Scenario comparatorScenario = (Scenario) comparator;
+        if (isDuplicateOf(comparatorScenario)) {
+            return 0;
+        }
+        return canonical.compareTo(comparatorScenario.canonical);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || !obj.getClass().equals(this.getClass())) {
+            return false;
+        }
+        return isDuplicateOf((Scenario) obj);
+    }
+
+    @Override
+    @Generated
+    public int hashCode() {
+        return (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+
+    private boolean isDuplicateOf(Scenario comparator) {
+        return fingerprint == comparator.fingerprint && canonical.equals(comparator.canonical);
     }
 
     @Override
     public String toString() {
-        return new Gson().toJson(this);
+        return CoverageJson.toJson(this);
     }
 
     Object getDetail() {
-        return scenario;
+        return detailRetained ? scenario : JsonParser.parseString(canonical);
+    }
+
+    /***
+     * @return String JSON of the scenario detail, as used for ordering and duplicate detection
+     */
+    String getCanonical() {
+        return canonical;
+    }
+
+    long getFingerprint() {
+        return fingerprint;
+    }
+
+    /***
+     * @return int id of the scenario in the report's ScenarioPool, or -1 if it is not pooled
+     */
+    int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
     }
 }
@@ -0,0 +1,97 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Report-wide intern pool of scenarios keyed by their canonical JSON.  Each distinct scenario is held once,
+ * with a dense int id, and every test recording it shares that instance, so scenarios reused across tests
+ * (e.g. by data providers) cost one canonical String rather than one per test.
+ */
+class ScenarioPool {
+    private final Map<Scenario, Scenario> scenarios;
+    private final AtomicInteger scenarioCount = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder canonicalLength = new LongAdder();
+
+    private ScenarioPool(boolean concurrent) {
+        this.scenarios = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    /***
+     * @param concurrent Whether scenarios are interned from multiple threads
+     * @return ScenarioPool instance
+     */
+    static ScenarioPool getInstance(boolean concurrent) {
+        return new ScenarioPool(concurrent);
+    }
+
+    /***
+     * @param scenario Scenario recorded by a test
+     * @return The pooled Scenario with the same canonical JSON, which is the given Scenario if it is new
+     */
+    Scenario intern(Scenario scenario) {
+        if (scenario == null) {
+            return null;
+        }
+        Scenario pooled = scenarios.get(scenario);
+        if (pooled == null) {
+            pooled = scenarios.computeIfAbsent(scenario, this::register);
+            if (pooled == scenario) {
+                return pooled;
+            }
+        }
+        hits.increment();
+        return pooled;
+    }
+
+    /***
+     * Release every pooled scenario, e.g. once the tests holding them were spilled; counts are kept
+     */
+    void clear() {
+        scenarios.clear();
+    }
+
+    private Scenario register(Scenario scenario) {
+        scenario.setId(scenarioCount.getAndIncrement());
+        canonicalLength.add(scenario.getCanonical().length());
+        return scenario;
+    }
+
+    /***
+     * @return long total length of the canonical JSON of the pooled scenarios
+     */
+    long getCanonicalLength() {
+        return canonicalLength.sum();
+    }
+
+    /***
+     * @return long count of scenarios found already pooled
+     */
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    /***
+     * @return long count of scenarios new to the pool, which is also the number of distinct scenarios
+     */
+    long getMissCount() {
+        return scenarioCount.get();
+    }
+}
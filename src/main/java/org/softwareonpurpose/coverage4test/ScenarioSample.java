@@ -0,0 +1,142 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.util.Comparator;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Bounded sample of the distinct scenarios of one test: the limit scenarios of least hash (a bottom-k
+ * sample), which is the same whatever the order scenarios are recorded in, together with the number of
+ * scenario occurrences recorded and the number of distinct scenarios.  The distinct count is exact until
+ * the sample first drops a scenario, then estimated with a HyperLogLog sketch (about 1.6% standard error).
+ * Callers hold the lock of the test owning the sample.
+ */
+class ScenarioSample {
+    private static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+    private static final Comparator<Scenario> HASH_ORDER =
+            Comparator.<Scenario>comparingLong(scenario -> hash(scenario) ^ Long.MIN_VALUE).thenComparing(Scenario::getCanonical);
+    private final int limit;
+    private final TreeSet<Scenario> byHash = new TreeSet<>(HASH_ORDER);
+    private long occurrences;
+    private byte[] registers;
+
+    private ScenarioSample(int limit) {
+        this.limit = limit;
+    }
+
+    /***
+     * @param limit Most scenarios held, at least 1
+     * @return ScenarioSample instance, without scenarios
+     */
+    static ScenarioSample getInstance(int limit) {
+        return new ScenarioSample(limit);
+    }
+
+    /***
+     * @param scenario Scenario about to be recorded
+     * @param held Scenarios held by the test
+     * @return boolean whether recording the scenario could add it to the sample
+     */
+    boolean admits(Scenario scenario, SortedSet<Scenario> held) {
+        return held.size() < limit || HASH_ORDER.compare(scenario, byHash.last()) < 0;
+    }
+
+    /***
+     * Record an occurrence of a scenario, adding it to the held scenarios if it is among the limit of least
+     * hash, and dropping the held scenario of greatest hash to make room
+     * @param scenario Scenario recorded
+     * @param held Scenarios held by the test, kept equal to the sample
+     * @return boolean whether the scenario was added
+     */
+    boolean add(Scenario scenario, SortedSet<Scenario> held) {
+        occurrences++;
+        if (registers != null) {
+            count(scenario);
+        }
+        if (held.contains(scenario)) {
+            return false;
+        }
+        if (held.size() < limit) {
+            byHash.add(scenario);
+            return held.add(scenario);
+        }
+        if (registers == null) {
+            registers = new byte[REGISTERS];
+            for (Scenario sampled : byHash) {
+                count(sampled);
+            }
+            count(scenario);
+        }
+        if (HASH_ORDER.compare(scenario, byHash.last()) > 0) {
+            return false;
+        }
+        held.remove(byHash.pollLast());
+        byHash.add(scenario);
+        return held.add(scenario);
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    /***
+     * @return long count of scenario occurrences recorded, including those of scenarios not held
+     */
+    long getOccurrences() {
+        return occurrences;
+    }
+
+    /***
+     * @return long count of distinct scenarios recorded; exact unless the sample has dropped a scenario
+     */
+    long getDistinctCount() {
+        if (registers == null) {
+            return byHash.size();
+        }
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            zeros += register == 0 ? 1 : 0;
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.max(byHash.size() + 1, Math.round(estimate));
+    }
+
+    private void count(Scenario scenario) {
+        long hash = hash(scenario);
+        int register = (int) (hash >>> (Long.SIZE - PRECISION));
+        byte rank = (byte) (Long.numberOfLeadingZeros(hash << PRECISION | 1L << (PRECISION - 1)) + 1);
+        if (rank > registers[register]) {
+            registers[register] = rank;
+        }
+    }
+
+    /***
+     * @return long well-mixed hash of the scenario's fingerprint (the MurmurHash3 finalizer)
+     */
+    private static long hash(Scenario scenario) {
+        long hash = scenario.getFingerprint();
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,301 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Run files spilled by a CoverageReport whose estimated heap reached its memory ceiling.  Each run holds
+ * the report's tests as they were when spilled, already in report order, so the runs are combined at
+ * render time by CoverageReportMerger's k-way merge rather than read back into memory.  A run is an
+ * 8-byte offset of its requirements section, then its system section (subject and test, as
+ * BinaryReportCodec writes a test) and its requirements section (requirement, subject, test name and
+ * verification count), each ending with a 0 flag.  Strings are written in full, so a reader holds one
+ * test at a time.  Beyond FAN_IN runs, compact() merges them in a cascade before they are rendered.  Runs
+ * are deleted by delete(), when the report is closed.
+ */
+class SpilledRuns {
+    static final int FAN_IN = 64;
+    private static final int CHECK_INTERVAL = 256;
+    private static final int BUFFER_CAPACITY = 1 << 16;
+    private static final int END = 0;
+    private static final int RECORD = 1;
+    private final Path directory;
+    private final long memoryCeiling;
+    private final List<Path> runs = new CopyOnWriteArrayList<>();
+    private final AtomicLong entries = new AtomicLong();
+
+    private SpilledRuns(Path directory, long memoryCeiling) {
+        this.directory = directory;
+        this.memoryCeiling = memoryCeiling;
+    }
+
+    /***
+     * @param directory Directory in which run files are created
+     * @param memoryCeiling Estimated retained bytes at which the report is spilled
+     * @return SpilledRuns instance, without runs
+     */
+    static SpilledRuns getInstance(Path directory, long memoryCeiling) {
+        return new SpilledRuns(directory, memoryCeiling);
+    }
+
+    long getMemoryCeiling() {
+        return memoryCeiling;
+    }
+
+    /***
+     * @return boolean whether enough entries were ingested since the last check to check the ceiling again
+     */
+    boolean isCheckDue() {
+        return entries.incrementAndGet() % CHECK_INTERVAL == 0;
+    }
+
+    boolean hasRuns() {
+        return !runs.isEmpty();
+    }
+
+    int getRunCount() {
+        return runs.size();
+    }
+
+    /***
+     * Write a run of every test and requirement link; the report must not change while it is written
+     * @param subjects Subjects of system coverage, sorted by name
+     * @param requirements Requirements, sorted by name
+     * @param tests Resolves a test id to its ExecutedTest
+     * @throws IOException if the run cannot be written
+     */
+    void write(SortedMap<String, SubjectCoverage> subjects, Collection<RequirementsIndex.Requirement> requirements,
+               IntFunction<ExecutedTest> tests) throws IOException {
+        runs.add(writeRun(output -> {
+            for (SubjectCoverage subject : subjects.values()) {
+                for (ExecutedTest test : subject.getTests()) {
+                    writeTest(output, subject.getName(), test);
+                }
+            }
+        }, output -> {
+            for (RequirementsIndex.Requirement requirement : requirements) {
+                for (Map.Entry<String, int[]> subject : requirement.getSubjects().entrySet()) {
+                    for (int id : subject.getValue()) {
+                        ExecutedTest test = tests.apply(id);
+                        writeLink(output, requirement.getName(), subject.getKey(), test.getTestName(), test.getVerificationCount());
+                    }
+                }
+            }
+        }));
+    }
+
+    /***
+     * Merge runs, a group of at most FAN_IN consecutive runs at a time, until no more than FAN_IN remain, so
+     * that rendering never opens more than FAN_IN run files at once
+     * @throws IOException if a merged run cannot be written; the runs are then left as they were
+     */
+    void compact() throws IOException {
+        while (runs.size() > FAN_IN) {
+            List<Path> current = new ArrayList<>(runs);
+            List<Path> merged = new ArrayList<>();
+            try {
+                for (int first = 0; first < current.size(); first += FAN_IN) {
+                    List<Path> group = current.subList(first, Math.min(first + FAN_IN, current.size()));
+                    merged.add(group.size() == 1 ? group.get(0) : writeMerged(group));
+                }
+            } catch (IOException | RuntimeException e) {
+                for (Path run : merged) {
+                    if (!current.contains(run)) {
+                        Files.deleteIfExists(run);
+                    }
+                }
+                throw e;
+            }
+            runs.clear();
+            runs.addAll(merged);
+            for (Path run : current) {
+                if (!merged.contains(run)) {
+                    Files.deleteIfExists(run);
+                }
+            }
+        }
+    }
+
+    private Path writeMerged(List<Path> group) throws IOException {
+        List<CoverageReportMerger.RecordSource> sources = getSources(group);
+        return writeRun(output -> {
+            try (CoverageReportMerger.MergedCursor cursor = CoverageReportMerger.MergedCursor.open(sources,
+                    CoverageReport.COVERAGE_TYPE_SYSTEM)) {
+                List<CoverageRecord> records;
+                while ((records = cursor.next()) != null) {
+                    writeTest(output, records.get(0).getSubject(), CoverageReportMerger.merge(records));
+                }
+            }
+        }, output -> {
+            try (CoverageReportMerger.MergedCursor cursor = CoverageReportMerger.MergedCursor.open(sources,
+                    CoverageReport.COVERAGE_TYPE_REQUIREMENTS)) {
+                List<CoverageRecord> records;
+                while ((records = cursor.next()) != null) {
+                    CoverageRecord first = records.get(0);
+                    writeLink(output, first.getRequirement(), first.getSubject(), first.getTestName(), first.getVerificationCount());
+                }
+            }
+        });
+    }
+
+    private Path writeRun(Section system, Section requirements) throws IOException {
+        Path run = Files.createTempFile(directory, "coverage4test-", ".run");
+        try (FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE)) {
+            channel.position(Long.BYTES);
+            BinaryReportCodec.Output output = new BinaryReportCodec.Output(Channels.newOutputStream(channel), false);
+            system.writeTo(output);
+            output.writeVarint(END);
+            output.flush();
+            long requirementsOffset = channel.position();
+            requirements.writeTo(output);
+            output.writeVarint(END);
+            output.flush();
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, requirementsOffset), 0);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(run);
+            throw e;
+        }
+        return run;
+    }
+
+    private static void writeTest(BinaryReportCodec.Output output, String subject, ExecutedTest test) throws IOException {
+        output.writeVarint(RECORD);
+        output.writeString(subject);
+        BinaryReportCodec.writeTest(output, test);
+    }
+
+    private static void writeLink(BinaryReportCodec.Output output, String requirement, String subject, String testName,
+                                  Integer verificationCount) throws IOException {
+        output.writeVarint(RECORD);
+        output.writeString(requirement);
+        output.writeString(subject);
+        output.writeString(testName);
+        output.writeVarint(verificationCount == null ? 0 : Integer.toUnsignedLong(verificationCount) + 1);
+    }
+
+    /***
+     * Delete every run file, continuing past any that cannot be deleted
+     * @throws IOException the first failure to delete a run
+     */
+    void delete() throws IOException {
+        IOException failure = null;
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        runs.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /***
+     * @return RecordSource of each run, in the order the runs were spilled
+     */
+    List<CoverageReportMerger.RecordSource> getSources() {
+        return getSources(runs);
+    }
+
+    private static List<CoverageReportMerger.RecordSource> getSources(List<Path> runs) {
+        List<CoverageReportMerger.RecordSource> sources = new ArrayList<>();
+        for (Path run : runs) {
+            sources.add(coverageType -> RunCursor.open(run, CoverageReport.COVERAGE_TYPE_SYSTEM.equals(coverageType)));
+        }
+        return sources;
+    }
+
+    /**
+     * Writes a section of a run, without its end flag
+     */
+    private interface Section {
+        void writeTo(BinaryReportCodec.Output output) throws IOException;
+    }
+
+    /**
+     * Streams the system or requirements section of a run
+     */
+    private static class RunCursor implements RecordCursor {
+        private final InputStream in;
+        private final BinaryReportCodec.Input input;
+        private final boolean system;
+        private boolean exhausted;
+
+        private RunCursor(InputStream in, boolean system) {
+            this.in = in;
+            this.input = new BinaryReportCodec.Input(in, false);
+            this.system = system;
+        }
+
+        static RunCursor open(Path run, boolean system) throws IOException {
+            FileChannel channel = FileChannel.open(run, StandardOpenOption.READ);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+                while (header.hasRemaining()) {
+                    if (channel.read(header, header.position()) < 0) {
+                        throw new EOFException(String.format("Spilled run truncated: %s", run));
+                    }
+                }
+                channel.position(system ? Long.BYTES : header.getLong(0));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            return new RunCursor(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_CAPACITY), system);
+        }
+
+        @Override
+        public CoverageRecord next() throws IOException {
+            if (exhausted || input.readVarint() == END) {
+                exhausted = true;
+                return null;
+            }
+            if (system) {
+                return BinaryReportCodec.readTest(input, input.readString());
+            }
+            String requirement = input.readString();
+            String subject = input.readString();
+            String testName = input.readString();
+            long verificationCount = input.readVarint();
+            return CoverageRecord.getInstance(requirement, subject, testName,
+                    verificationCount == 0 ? null : (int) (verificationCount - 1), null);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+/**
+ * The tests of one subject: indexed by name for recording, sorted by name for rendering, with the
+ * subject's rendered JSON cached until one of its tests changes
+ */
+class SubjectCoverage {
+    private final String name;
+    private final Map<String, ExecutedTest> lookup;
+    private final SortedSet<ExecutedTest> tests;
+    private final RenderedFragment fragment = RenderedFragment.getInstance();
+
+    private SubjectCoverage(String name, boolean concurrent) {
+        this.name = name;
+        this.lookup = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.tests = concurrent ? new ConcurrentSkipListSet<>() : new TreeSet<>();
+    }
+
+    /***
+     * @param name Name of the subject
+     * @param concurrent Whether tests are added from multiple threads
+     * @return SubjectCoverage instance
+     */
+    static SubjectCoverage getInstance(String name, boolean concurrent) {
+        return new SubjectCoverage(name, concurrent);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    ExecutedTest get(String testName) {
+        return lookup.get(testName);
+    }
+
+    /***
+     * @param testName Name of the test
+     * @param register Creates and registers the test, if it is new to the subject
+     * @return ExecutedTest of the subject with the name
+     */
+    ExecutedTest computeIfAbsent(String testName, Function<String, ExecutedTest> register) {
+        return lookup.computeIfAbsent(testName, name -> add(register.apply(name)));
+    }
+
+    private ExecutedTest add(ExecutedTest test) {
+        tests.add(test);
+        test.addFragment(fragment);
+        fragment.invalidate();
+        return test;
+    }
+
+    /***
+     * @return SortedSet of the subject's tests, sorted by name
+     */
+    SortedSet<ExecutedTest> getTests() {
+        return tests;
+    }
+
+    boolean isEmpty() {
+        return tests.isEmpty();
+    }
+
+    /***
+     * Write the subject and its tests, as an element of a "subjects" array
+     * @param json JsonWriter to which the subject is written
+     * @param cached Whether to write from, and keep, the subject's rendered JSON
+     * @throws IOException if the subject cannot be written
+     */
+    void writeTo(JsonWriter json, boolean cached) throws IOException {
+        if (cached) {
+            fragment.writeTo(json, this::render);
+        } else {
+            render(json);
+        }
+    }
+
+    /***
+     * @param cached Whether to return, and keep, the subject's rendered JSON
+     * @return String JSON of the subject, as written by writeTo
+     * @throws IOException if the subject cannot be rendered
+     */
+    String toJson(boolean cached) throws IOException {
+        return cached ? fragment.getJson(this::render) : RenderedFragment.render(this::render);
+    }
+
+    private void render(JsonWriter json) throws IOException {
+        json.beginObject().name("subject").value(name).name("tests").beginArray();
+        for (ExecutedTest test : tests) {
+            test.writeTo(json);
+        }
+        json.endArray().endObject();
+    }
+}
@@ -0,0 +1,135 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+/**
+ * One test of a CoverageReport, resolved once for recording many executions of it, e.g. each row of a
+ * data provider.  Recording through a handle is equivalent to the report's addTestEntry methods: the
+ * first entry of a test sets its verification count, and later entries add scenarios and timings.  A
+ * handle may be shared by threads of a concurrent report.  It saves looking up the test and linking its
+ * requirements for each execution; the test data of each execution is still serialized.
+ */
+public final class TestHandle {
+    private final CoverageReport report;
+    private final String subject;
+    private final String testName;
+    private final String[] requirements;
+    private final int requirementCount;
+    private volatile Binding binding;
+
+    private TestHandle(CoverageReport report, String subject, String testName, String[] requirements) {
+        this.report = report;
+        this.subject = subject;
+        this.testName = testName;
+        this.requirements = requirements == null ? null : requirements.clone();
+        int count = 0;
+        if (requirements != null) {
+            for (String requirement : requirements) {
+                if (requirement != null && !requirement.isBlank()) {
+                    count++;
+                }
+            }
+        }
+        this.requirementCount = count;
+    }
+
+    static TestHandle getInstance(CoverageReport report, String subject, String testName, String... requirements) {
+        return new TestHandle(report, subject, testName, requirements);
+    }
+
+    /***
+     * Record one execution of the test
+     * @param testData Test data of the scenario executed, or null
+     */
+    public void record(Object testData) {
+        report.record(this, null, testData, CoverageEntry.UNTIMED);
+    }
+
+    /***
+     * Record one execution of the test
+     * @param verificationCount Verification count, or null; kept only if this is the test's first entry
+     * @param testData Test data of the scenario executed, or null
+     */
+    public void record(Integer verificationCount, Object testData) {
+        report.record(this, verificationCount, testData, CoverageEntry.UNTIMED);
+    }
+
+    /***
+     * Record one execution of the test, with no scenario
+     * @param verificationCount Verification count; kept only if this is the test's first entry
+     */
+    public void recordVerifications(int verificationCount) {
+        report.record(this, verificationCount, null, CoverageEntry.UNTIMED);
+    }
+
+    /***
+     * Record one timed execution of the test; see CoverageReport.addTimedTestEntry
+     * @param elapsedNanos Elapsed time of the execution, in nanoseconds
+     * @param testData Test data of the scenario executed, or null
+     */
+    public void recordTimed(long elapsedNanos, Object testData) {
+        if (elapsedNanos < 0) {
+            throw new IllegalArgumentException(String.format("Elapsed time of %s is negative: %d", testName, elapsedNanos));
+        }
+        report.record(this, null, testData, elapsedNanos);
+    }
+
+    String getSubject() {
+        return subject;
+    }
+
+    String getTestName() {
+        return testName;
+    }
+
+    String[] getRequirements() {
+        return requirements;
+    }
+
+    int getRequirementCount() {
+        return requirementCount;
+    }
+
+    /***
+     * @param generation Generation of the report's tests; it changes when the report spills its tests
+     * @return ExecutedTest resolved by an ingested entry in that generation, or null
+     */
+    ExecutedTest getTest(int generation) {
+        Binding current = binding;
+        return current != null && current.generation == generation ? current.test : null;
+    }
+
+    /***
+     * @param test ExecutedTest resolved by an ingested entry, or null if the entry was not ingested directly
+     * @param generation Generation of the report's tests, which must not change until this returns
+     */
+    void setTest(ExecutedTest test, int generation) {
+        if (test != null) {
+            binding = new Binding(test, generation);
+        }
+    }
+
+    /**
+     * A test resolved by the handle, with the generation it was resolved in, published together
+     */
+    private static final class Binding {
+        private final ExecutedTest test;
+        private final int generation;
+
+        private Binding(ExecutedTest test, int generation) {
+            this.test = test;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class AsyncCoverageReportTests {
+    private static final int THREADS = 8;
+    private static final int ENTRIES_PER_THREAD = 2000;
+
+    @DataProvider
+    public static Object[][] lossless() {
+        return new Object[][]{
+                {BackpressurePolicy.BLOCK}
+                , {BackpressurePolicy.GROW}
+        };
+    }
+
+    @Test(dataProvider = "lossless")
+    public void testAddTestEntry_matchesSynchronousReport(BackpressurePolicy backpressure) throws Exception {
+        CoverageReport expected = CoverageReport.getInstance();
+        for (int thread = 0; thread < THREADS; thread++) {
+            recordEntries(expected, thread);
+        }
+        try (CoverageReport actual = CoverageReport.getAsyncInstance(16, backpressure)) {
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            List<Future<?>> results = new ArrayList<>();
+            try {
+                for (int thread = 0; thread < THREADS; thread++) {
+                    int threadNumber = thread;
+                    results.add(executor.submit(() -> recordEntries(actual, threadNumber)));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to ingest every queued entry");
+        }
+    }
+
+    @Test
+    public void testFlush_seesOwnEntries() throws Exception {
+        int entriesPerThread = 100;
+        CoverageReport report = CoverageReport.getAsyncInstance(16, BackpressurePolicy.BLOCK);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < THREADS; thread++) {
+                int threadNumber = thread;
+                results.add(executor.submit(() -> {
+                    int missing = 0;
+                    for (int entry = 0; entry < entriesPerThread; entry++) {
+                        String testName = String.format("test %d-%d", threadNumber, entry);
+                        report.addTestEntry(testName, "feature 1");
+                        report.flush();
+                        if (!report.getSystemCoverage().contains('"' + testName + '"')) {
+                            missing++;
+                        }
+                    }
+                    return missing;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                Assert.assertEquals((int) result.get(), 0, "Failed to ingest entries queued before flush");
+            }
+        } finally {
+            executor.shutdownNow();
+            report.close();
+        }
+    }
+
+    @Test
+    public void testJournalTo_queuedEntries() throws Exception {
+        Path path = Files.createTempFile("coverage", ".journal");
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CoverageReport report = CoverageReport.getAsyncInstance(10, BackpressurePolicy.BLOCK);
+            report.addTestEntry("test 0", "feature 1", new BlockingTestData(release));
+            report.journalTo(path);
+            report.addTestEntry("test 1", "feature 1", 1, "scenario 1", "requirement 1");
+            Thread.sleep(300);
+            CoverageReport actual = CoverageReport.replay(path);
+            release.countDown();
+            report.close();
+            Assert.assertEquals(actual.getTestCount(), 1, "Failed to journal an entry before queueing it");
+        } finally {
+            release.countDown();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testGetDroppedEntryCount() {
+        int entries = 10000;
+        CoverageReport report = CoverageReport.getAsyncInstance(1, BackpressurePolicy.DROP);
+        for (int entry = 0; entry < entries; entry++) {
+            report.addTestEntry("test " + entry, "feature 1", "scenario " + entry);
+        }
+        report.close();
+        long actual = report.getTestCount() + report.getDroppedEntryCount();
+        Assert.assertEquals(actual, entries, "Failed to account for every dropped entry");
+    }
+
+    @Test
+    public void testCaptureTestData() {
+        CoverageReport expected = CoverageReport.getInstance();
+        expected.addTestEntry("test 1", "feature 1", 1, List.of("scenario 1"), "us-0001");
+        try (CoverageReport actual = CoverageReport.getAsyncInstance(10, BackpressurePolicy.BLOCK).captureTestData()) {
+            List<String> testData = new ArrayList<>(List.of("scenario 1"));
+            actual.addTestEntry("test 1", "feature 1", 1, testData, "us-0001");
+            testData.set(0, "modified after recording");
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to capture test data when recorded");
+        }
+    }
+
+    @Test
+    public void testAddTestEntry_afterClose() {
+        CoverageReport report = CoverageReport.getAsyncInstance(10, BackpressurePolicy.BLOCK);
+        report.addTestEntry("test 1", "feature 1");
+        report.close();
+        report.addTestEntry("test 2", "feature 1");
+        int actual = report.getTestCount();
+        Assert.assertEquals(actual, 2, "Failed to ingest entries recorded after close");
+    }
+
+    @Test
+    public void testGetFailedEntryCount() {
+        List<Object> selfReferencing = new ArrayList<>();
+        selfReferencing.add(selfReferencing);
+        CoverageReport report = CoverageReport.getAsyncInstance(10, BackpressurePolicy.BLOCK);
+        report.addTestEntry("test 1", "feature 1", selfReferencing);
+        report.addTestEntry("test 2", "feature 1");
+        report.close();
+        Assert.assertEquals(report.getFailedEntryCount(), 1, "Failed to count an entry that could not be ingested");
+        Assert.assertEquals(report.getTestCount(), 1, "Failed to ingest entries following one that failed");
+    }
+
+    @Test
+    public void testSubmit_duringClose() throws Exception {
+        Queue<CoverageEntry> ingested = new ConcurrentLinkedQueue<>();
+        AtomicInteger rejected = new AtomicInteger();
+        AsyncAggregator aggregator = AsyncAggregator.start(16, BackpressurePolicy.BLOCK, ingested::add);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < THREADS; thread++) {
+                results.add(executor.submit(() -> {
+                    for (int entry = 0; entry < ENTRIES_PER_THREAD; entry++) {
+                        if (!aggregator.submit(CoverageEntry.getInstance("test " + entry, "feature 1", 1, null, 0))) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            aggregator.close();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        int actual = ingested.size() + rejected.get();
+        Assert.assertEquals(actual, THREADS * ENTRIES_PER_THREAD, "Failed to ingest or reject every entry submitted during close");
+    }
+
+    @Test
+    public void testFlush_aggregatorFailed() {
+        Queue<CoverageEntry> ingested = new ConcurrentLinkedQueue<>();
+        AtomicBoolean failing = new AtomicBoolean(true);
+        AsyncAggregator aggregator = AsyncAggregator.start(10, BackpressurePolicy.BLOCK, entry -> {
+            if (failing.getAndSet(false)) {
+                throw new InternalError("simulated aggregator failure");
+            }
+            ingested.add(entry);
+        });
+        aggregator.submit(CoverageEntry.getInstance("test 1", "feature 1", 1, null, 0));
+        try {
+            aggregator.flush();
+            Assert.fail("Failed to surface the failure of the aggregator thread");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getCause() instanceof InternalError, "Failed to surface the failure of the aggregator thread");
+        }
+        boolean queued = aggregator.submit(CoverageEntry.getInstance("test 2", "feature 1", 1, null, 0));
+        aggregator.flush();
+        aggregator.close();
+        Assert.assertFalse(queued, "Failed to hand entries back to the caller once the aggregator failed");
+        Assert.assertEquals(aggregator.getFailedCount(), 1, "Failed to count the entry lost with the aggregator thread");
+    }
+
+    @Test(timeOut = 30000)
+    public void testSubmit_blockedWhenAggregatorFails() throws Exception {
+        Queue<CoverageEntry> ingested = new ConcurrentLinkedQueue<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncAggregator aggregator = AsyncAggregator.start(1, BackpressurePolicy.BLOCK, entry -> {
+            if (started.getCount() > 0) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new InternalError("simulated aggregator failure");
+            }
+            ingested.add(entry);
+        });
+        aggregator.submit(CoverageEntry.getInstance("test 1", "feature 1", 1, null, 0));
+        started.await();
+        aggregator.submit(CoverageEntry.getInstance("test 2", "feature 1", 1, null, 0));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> blocked = executor.submit(() -> aggregator.submit(CoverageEntry.getInstance("test 3", "feature 1", 1, null, 0)));
+            release.countDown();
+            Assert.assertFalse(blocked.get(20, TimeUnit.SECONDS), "Failed to release a producer blocked on a failed aggregator");
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertThrows(IllegalStateException.class, aggregator::close);
+        Assert.assertEquals(ingested.size(), 1, "Failed to ingest the entry left queued on the closing thread");
+    }
+
+    @Test
+    public void testClose_aggregatorFailed() throws Exception {
+        Path path = Files.createTempFile("coverage", ".journal");
+        try {
+            CoverageReport report = CoverageReport.getAsyncInstance(10, BackpressurePolicy.BLOCK);
+            report.addTestEntry("test 1", "feature 1", new FatalTestData());
+            report.journalTo(path);
+            report.addTestEntry("test 0", "feature 1");
+            Assert.assertThrows(IllegalStateException.class, report::close);
+            report.addTestEntry("test 2", "feature 1");
+            Thread.sleep(300);
+            CoverageReport actual = CoverageReport.replay(path);
+            Assert.assertEquals(actual.getTestCount(), 1, "Failed to close the journal when closing the aggregator failed");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static void recordEntries(CoverageReport report, int thread) {
+        for (int entry = 0; entry < ENTRIES_PER_THREAD; entry++) {
+            report.addTestEntry("test " + entry % 50, "subject " + entry % 7, 1, "scenario " + (entry + thread) % 90,
+                    "requirement " + entry % 11);
+        }
+    }
+
+    @JsonAdapter(FatalTestData.Adapter.class)
+    private static class FatalTestData {
+        private static class Adapter extends TypeAdapter<FatalTestData> {
+            @Override
+            public void write(JsonWriter out, FatalTestData value) {
+                throw new InternalError("simulated fatal error");
+            }
+
+            @Override
+            public FatalTestData read(JsonReader in) throws IOException {
+                in.skipValue();
+                return null;
+            }
+        }
+    }
+
+    @JsonAdapter(BlockingTestData.Adapter.class)
+    private static class BlockingTestData {
+        private final transient CountDownLatch release;
+
+        BlockingTestData(CountDownLatch release) {
+            this.release = release;
+        }
+
+        private static class Adapter extends TypeAdapter<BlockingTestData> {
+            @Override
+            public void write(JsonWriter out, BlockingTestData value) throws IOException {
+                try {
+                    value.release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                out.value("released");
+            }
+
+            @Override
+            public BlockingTestData read(JsonReader in) throws IOException {
+                in.skipValue();
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Test
+public class BinaryReportTests {
+    @Test
+    public void testLoadBinary() throws IOException {
+        CoverageReport expected = getPopulatedReport();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        expected.writeBinaryTo(out, false);
+        CoverageReport actual = CoverageReport.loadBinary(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to load a binary report");
+        Assert.assertTrue(out.size() < expected.toString().getBytes(StandardCharsets.UTF_8).length / 4,
+                String.format("Failed to write a compact binary report: %d bytes", out.size()));
+    }
+
+    @Test
+    public void testLoadBinary_compressed() throws IOException {
+        CoverageReport expected = getPopulatedReport();
+        Path path = Files.createTempFile("coverage", ".rpt.gz");
+        try {
+            expected.writeBinaryTo(path, true);
+            CoverageReport actual = CoverageReport.loadBinary(path);
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to load a compressed binary report");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testLoadBinary_extend() throws IOException {
+        CoverageReport expected = getPopulatedReport();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        expected.writeBinaryTo(out, true);
+        CoverageReport actual = CoverageReport.loadBinary(new ByteArrayInputStream(out.toByteArray()));
+        for (CoverageReport report : List.of(expected, actual)) {
+            report.addTimedTestEntry("test 1", "subject 1", 1_000_000, 7, "new scenario", "new requirement");
+            report.addTestEntry("new test", "subject 1");
+        }
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to extend a loaded binary report");
+    }
+
+    @Test
+    public void testLoadBinary_empty() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CoverageReport.getInstance().writeBinaryTo(out, false);
+        CoverageReport actual = CoverageReport.loadBinary(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(actual.toString(), CoverageReport.getInstance().toString(), "Failed to load an empty binary report");
+    }
+
+    @Test
+    public void testLoadBinary_notBinaryReport() {
+        byte[] json = CoverageReport.getInstance().toString().getBytes(StandardCharsets.UTF_8);
+        Assert.assertThrows(IOException.class, () -> CoverageReport.loadBinary(new ByteArrayInputStream(json)));
+    }
+
+    @Test
+    public void testLoadBinary_truncated() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        getPopulatedReport().writeBinaryTo(out, false);
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() / 2);
+        Assert.assertThrows(IOException.class, () -> CoverageReport.loadBinary(new ByteArrayInputStream(truncated)));
+    }
+
+    private static CoverageReport getPopulatedReport() {
+        CoverageReport report = CoverageReport.getInstance();
+        for (int entry = 0; entry < 2000; entry++) {
+            Map<String, Object> scenario = new TreeMap<>();
+            scenario.put("id", entry % 17);
+            scenario.put("values", List.of(entry % 11 * 0.25, "<" + entry % 3 + ">", entry % 2 == 0));
+            Object testData = entry % 5 == 0 ? null : entry % 5 == 1 ? "scenario '" + entry % 4 : scenario;
+            if (entry % 3 == 2) {
+                report.addTimedTestEntry("test " + entry % 13, "subject " + entry % 4, entry * 1_000L, entry % 13,
+                        testData, "requirement " + entry % 7);
+            } else {
+                report.addTestEntry("test " + entry % 13, "subject " + entry % 4, entry % 3 == 0 ? null : entry % 13,
+                        testData, "requirement " + entry % 7, entry % 2 == 0 ? "requirement \u00e9" : null);
+            }
+        }
+        report.addTestEntry("no scenarios", "subject 1");
+        return report;
+    }
+}
@@ -0,0 +1,81 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@Test
+public class ConcurrentCoverageReportTests {
+    private static final int THREADS = 32;
+    private static final int SUBJECTS = 8;
+    private static final int TESTS_PER_SUBJECT = 25;
+    private static final int SCENARIOS = 40;
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void testGetConcurrentInstance() {
+        Class expected = CoverageReport.class;
+        Class actual = CoverageReport.getConcurrentInstance().getClass();
+        Assert.assertEquals(actual, expected, String.format("Failed to return an instance of %s", expected));
+    }
+
+    @Test
+    public void testAddTestEntry_concurrentEntriesNotLost() throws Exception {
+        CoverageReport expected = CoverageReport.getInstance();
+        for (int thread = 0; thread < THREADS; thread++) {
+            recordEntries(expected, thread);
+        }
+        CoverageReport actual = CoverageReport.getConcurrentInstance();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < THREADS; thread++) {
+                int threadNumber = thread;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    recordEntries(actual, threadNumber);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(actual.getTestCount(), SUBJECTS * TESTS_PER_SUBJECT, "Failed to record every test");
+        Assert.assertEquals(actual.getSystemCoverage(), expected.getSystemCoverage(), "Failed to record every scenario");
+        Assert.assertEquals(actual.getRequirementsCoverage(), expected.getRequirementsCoverage(), "Failed to record every requirement");
+    }
+
+    private static void recordEntries(CoverageReport report, int thread) {
+        for (int subject = 0; subject < SUBJECTS; subject++) {
+            for (int test = 0; test < TESTS_PER_SUBJECT; test++) {
+                int scenario = (thread + test) % SCENARIOS;
+                report.addTestEntry("test " + test, "subject " + subject, 1, "scenario " + scenario,
+                        "requirement " + (test % 5), "requirement " + (thread % 7));
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@Test
+public class CoverageCollectorServerTests {
+    private static final int CLIENTS = 3;
+    private static final int ENTRIES = 3000;
+
+    @Test
+    public void testGetClientInstance_unixDomainSocket() throws Exception {
+        CoverageReport expected = CoverageReport.getInstance();
+        for (int client = 0; client < CLIENTS; client++) {
+            recordEntries(expected, client);
+        }
+        Path socket = getTempPath(".socket");
+        Path fallback = getTempPath(".journal");
+        CoverageCollectorServer server = CoverageCollectorServer.start(UnixDomainSocketAddress.of(socket));
+        try {
+            ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+            List<Future<?>> results = new ArrayList<>();
+            try {
+                for (int client = 0; client < CLIENTS; client++) {
+                    int clientNumber = client;
+                    results.add(executor.submit(() -> {
+                        try (CoverageReport report = CoverageReport.getClientInstance(server.getAddress(), fallback)) {
+                            recordEntries(report, clientNumber);
+                        }
+                    }));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            server.close();
+        }
+        Assert.assertFalse(Files.exists(socket), "Failed to delete the socket file");
+        Assert.assertFalse(Files.exists(fallback), "Failed to send entries rather than journal them");
+        Assert.assertEquals(server.getReport().toString(), expected.toString(), "Failed to collect entries of every client");
+    }
+
+    @Test
+    public void testGetClientInstance_tcp() throws IOException {
+        CoverageReport expected = CoverageReport.getInstance();
+        recordEntries(expected, 0);
+        Path fallback = getTempPath(".journal");
+        SocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        CoverageCollectorServer server = CoverageCollectorServer.start(address);
+        try (CoverageReport report = CoverageReport.getClientInstance(server.getAddress(), fallback)) {
+            recordEntries(report, 0);
+        } finally {
+            server.close();
+        }
+        Assert.assertEquals(server.getReport().toString(), expected.toString(), "Failed to collect entries over TCP");
+    }
+
+    @Test
+    public void testGetClientInstance_serverUnreachable() throws IOException {
+        CoverageReport expected = CoverageReport.getInstance();
+        recordEntries(expected, 0);
+        Path socket = getTempPath(".socket");
+        Path fallback = getTempPath(".journal");
+        try {
+            CoverageReport report = CoverageReport.getClientInstance(UnixDomainSocketAddress.of(socket), fallback);
+            recordEntries(report, 0);
+            report.close();
+            Assert.assertEquals(report.getDroppedEntryCount(), 0, "Failed to journal entries that could not be sent");
+            try (CoverageCollectorServer server = CoverageCollectorServer.start(UnixDomainSocketAddress.of(socket))) {
+                server.recover(fallback);
+                Assert.assertEquals(server.getReport().toString(), expected.toString(), "Failed to recover journaled entries");
+            }
+        } finally {
+            Files.deleteIfExists(fallback);
+        }
+    }
+
+    @Test(timeOut = 60_000)
+    public void testGetClientInstance_serverStalled() throws IOException {
+        Path socket = getTempPath(".socket");
+        Path fallback = getTempPath(".journal");
+        String payload = "x".repeat(1024);
+        try (ServerSocketChannel stalled = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            stalled.bind(UnixDomainSocketAddress.of(socket));
+            CoverageClient client = CoverageClient.connect(UnixDomainSocketAddress.of(socket), fallback, 100, 200);
+            SocketChannel accepted = stalled.accept();
+            try {
+                for (int entry = 0; entry < ENTRIES * 4 && client.isConnected(); entry++) {
+                    client.append("test " + entry, "subject 1", null, Scenario.getInstance(payload + entry), CoverageEntry.UNTIMED);
+                }
+                Assert.assertFalse(client.isConnected(), "Failed to disconnect from a server that stopped reading");
+                client.append("test last", "subject 1", null, null, CoverageEntry.UNTIMED);
+                client.close();
+            } finally {
+                accepted.close();
+            }
+            CoverageReport recovered = CoverageReport.replay(fallback);
+            Assert.assertTrue(recovered.getSystemCoverage().contains("\"test last\""),
+                    "Failed to journal entries once the server stopped reading");
+            Assert.assertEquals(client.getDroppedCount(), 0, "Failed to journal entries that could not be sent");
+        } finally {
+            Files.deleteIfExists(socket);
+            Files.deleteIfExists(fallback);
+        }
+    }
+
+    @Test(timeOut = 60_000)
+    public void testGetClientInstance_reconnect() throws Exception {
+        Path socket = getTempPath(".socket");
+        Path fallback = getTempPath(".journal");
+        CoverageClient client = CoverageClient.connect(UnixDomainSocketAddress.of(socket), fallback, 100, 5000);
+        try {
+            Assert.assertFalse(client.isConnected(), "Failed to start disconnected from an unreachable server");
+            client.append("test 1", "subject 1", null, null, CoverageEntry.UNTIMED);
+            client.flush();
+            Assert.assertTrue(Files.exists(fallback), "Failed to journal entries while the server is unreachable");
+            try (CoverageCollectorServer server = CoverageCollectorServer.start(UnixDomainSocketAddress.of(socket))) {
+                while (!client.isConnected()) {
+                    client.append("test 1", "subject 1", null, null, CoverageEntry.UNTIMED);
+                    client.flush();
+                    Thread.sleep(50);
+                }
+                client.append("test 2", "subject 1", null, null, CoverageEntry.UNTIMED);
+                client.close();
+                while (!server.getReport().getSystemCoverage().contains("\"test 2\"")) {
+                    Thread.sleep(50);
+                }
+                Assert.assertEquals(client.getDroppedCount(), 0, "Failed to send entries once reconnected");
+            }
+        } finally {
+            client.close();
+            Files.deleteIfExists(fallback);
+        }
+    }
+
+    @Test(timeOut = 60_000)
+    public void testReceive_malformedFrame() throws Exception {
+        Path socket = getTempPath(".socket");
+        try (CoverageCollectorServer server = CoverageCollectorServer.start(UnixDomainSocketAddress.of(socket))) {
+            try (SocketChannel client = SocketChannel.open(server.getAddress())) {
+                client.write(ByteBuffer.allocate(CoverageClient.FRAME_HEADER_LENGTH).putInt(0, -1));
+                while (server.getFailedClientCount() == 0) {
+                    Thread.sleep(10);
+                }
+            }
+            Assert.assertEquals(server.getFailedClientCount(), 1, "Failed to count a client sending a malformed frame");
+        }
+    }
+
+    @Test(timeOut = 60_000)
+    public void testReceive_releasesClosedClients() throws Exception {
+        Path socket = getTempPath(".socket");
+        Path fallback = getTempPath(".journal");
+        try (CoverageCollectorServer server = CoverageCollectorServer.start(UnixDomainSocketAddress.of(socket))) {
+            for (int client = 0; client < CLIENTS; client++) {
+                try (CoverageReport report = CoverageReport.getClientInstance(server.getAddress(), fallback)) {
+                    report.addTestEntry("test " + client, "subject 1", 1, "scenario 1", "requirement 1");
+                }
+            }
+            while (server.getConnectedClientCount() > 0) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(server.getFailedClientCount(), 0, "Failed to treat closed clients as disconnected cleanly");
+        } finally {
+            Files.deleteIfExists(fallback);
+        }
+    }
+
+    @Test
+    public void testRun_usage() throws Exception {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = CoverageCollectorServer.run(new String[]{"--socket"}, System.out,
+                new PrintStream(err, true, StandardCharsets.UTF_8));
+        Assert.assertEquals(status, 2, "Failed to return the usage status");
+        Assert.assertTrue(err.toString(StandardCharsets.UTF_8).contains("Usage:"), "Failed to write the usage");
+    }
+
+    @Test
+    public void testMain() throws Exception {
+        Path socket = getTempPath(".socket");
+        Path fallback = getTempPath(".journal");
+        Path output = getTempPath(".rpt");
+        Process collector = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), CoverageCollectorServer.class.getName(),
+                "--socket", socket.toString(), "--output", output.toString())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try {
+            BufferedReader started = new BufferedReader(new InputStreamReader(collector.getInputStream(), StandardCharsets.UTF_8));
+            String line = started.readLine();
+            Assert.assertNotNull(line, "Failed to start collecting");
+            Assert.assertTrue(collector.isAlive(), "Failed to keep collecting after starting");
+            try (CoverageReport report = CoverageReport.getClientInstance(UnixDomainSocketAddress.of(socket), fallback)) {
+                report.addTestEntry("test 1", "subject 1", 1, "scenario 1", "requirement 1");
+            }
+            collector.destroy();
+            Assert.assertTrue(collector.waitFor(30, TimeUnit.SECONDS), "Failed to stop collecting");
+            CoverageReport expected = CoverageReport.getInstance();
+            expected.addTestEntry("test 1", "subject 1", 1, "scenario 1", "requirement 1");
+            Assert.assertFalse(Files.exists(fallback), "Failed to send the entry rather than journal it");
+            Assert.assertEquals(Files.readString(output), expected.toString(), "Failed to write the collected report on shutdown");
+        } finally {
+            collector.destroyForcibly();
+            Files.deleteIfExists(output);
+            Files.deleteIfExists(fallback);
+        }
+    }
+
+    private static Path getTempPath(String suffix) throws IOException {
+        Path path = Files.createTempFile("coverage", suffix);
+        Files.delete(path);
+        return path;
+    }
+
+    private static void recordEntries(CoverageReport report, int client) {
+        for (int entry = 0; entry < ENTRIES; entry++) {
+            report.addTimedTestEntry("test " + entry % 50, "subject " + client, entry, 1,
+                    "scenario " + entry % 7, "requirement " + entry % 11);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@Test
+public class CoverageCollectorTests {
+    private static final int FORKS = 3;
+    private static final int ENTRIES = 300;
+
+    @Test
+    public void testCollect_threads() throws Exception {
+        CoverageReport expected = CoverageReport.getInstance();
+        for (int fork = 0; fork < FORKS; fork++) {
+            recordEntries(expected, fork);
+        }
+        Path path = getCollectionPath();
+        try {
+            ExecutorService executor = Executors.newFixedThreadPool(FORKS);
+            List<Future<?>> results = new ArrayList<>();
+            try (CoverageReport collector = CoverageReport.getCollectorInstance(path)) {
+                for (int fork = 0; fork < FORKS; fork++) {
+                    int forkNumber = fork;
+                    results.add(executor.submit(() -> recordEntries(collector, forkNumber)));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            CoverageReport actual = CoverageReport.collect(path);
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to collect entries of every thread");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testCollect_processes() throws Exception {
+        CoverageReport expected = CoverageReport.getInstance();
+        for (int fork = 0; fork < FORKS; fork++) {
+            recordEntries(expected, fork);
+        }
+        Path path = getCollectionPath();
+        try {
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            List<Process> forks = new ArrayList<>();
+            for (int fork = 0; fork < FORKS; fork++) {
+                forks.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        CoverageCollectorTests.class.getName(), path.toString(), Integer.toString(fork))
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT).start());
+            }
+            for (Process fork : forks) {
+                Assert.assertTrue(fork.waitFor(60, TimeUnit.SECONDS), "Failed to finish fork");
+                Assert.assertEquals(fork.exitValue(), 0, "Failed to record entries in fork");
+            }
+            CoverageReport actual = CoverageReport.collect(path);
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to collect entries of every process");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testCollect_abandonedReservation() throws IOException {
+        CoverageReport expected = CoverageReport.getInstance();
+        recordEntries(expected, 0);
+        Path path = getCollectionPath();
+        try (CoverageReport collector = CoverageReport.getCollectorInstance(path, 1 << 20)) {
+            collector.addTestEntry("test 1", "feature 1", "scenario 1");
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, 64);
+                header.order(ByteOrder.nativeOrder());
+                header.putLong(16, header.getLong(16) + 96);
+            }
+            recordEntries(collector, 0);
+        }
+        try {
+            expected.addTestEntry("test 1", "feature 1", "scenario 1");
+            CoverageReport actual = CoverageReport.collect(path);
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to skip abandoned reservation");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testGetDroppedEntryCount_full() throws IOException {
+        Path path = getCollectionPath();
+        try {
+            CoverageReport collector = CoverageReport.getCollectorInstance(path, 1024);
+            for (int entry = 0; entry < ENTRIES; entry++) {
+                collector.addTestEntry("test " + entry, "feature 1");
+            }
+            collector.close();
+            long actual = CoverageReport.collect(path).getTestCount() + collector.getDroppedEntryCount();
+            Assert.assertEquals(actual, ENTRIES, "Failed to account for entries beyond capacity");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testGetCollectorInstance_concurrentOpen() throws Exception {
+        Path path = getCollectionPath();
+        ExecutorService executor = Executors.newFixedThreadPool(FORKS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<CoverageReport>> results = new ArrayList<>();
+            for (int fork = 0; fork < FORKS * 4; fork++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return CoverageReport.getCollectorInstance(path, 1 << 20);
+                }));
+            }
+            start.countDown();
+            for (Future<CoverageReport> result : results) {
+                result.get().close();
+            }
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testAppend_afterClose() throws IOException {
+        Path path = getCollectionPath();
+        try {
+            MappedCoverageCollector collector = MappedCoverageCollector.open(path, 1 << 20);
+            collector.close();
+            Assert.assertTrue(collector.append("test 1", "feature 1", null, null, CoverageEntry.UNTIMED),
+                    "Failed to accept an entry appended after close");
+            CoverageReport expected = CoverageReport.getInstance();
+            expected.addTestEntry("test 1", "feature 1");
+            Assert.assertEquals(CoverageReport.collect(path).toString(), expected.toString(),
+                    "Failed to collect an entry appended after close");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testGetCollectorInstance_notCollection() throws IOException {
+        Path path = Files.createTempFile("coverage", ".rpt");
+        try {
+            Files.writeString(path, CoverageReport.getInstance().toString());
+            Assert.assertThrows(IOException.class, () -> CoverageReport.getCollectorInstance(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /***
+     * Record the entries of one fork into the collection named by the first argument
+     * @param args Path of the collection, and number of the fork
+     * @throws IOException if the collection cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        try (CoverageReport collector = CoverageReport.getCollectorInstance(Path.of(args[0]))) {
+            recordEntries(collector, Integer.parseInt(args[1]));
+        }
+    }
+
+    private static Path getCollectionPath() throws IOException {
+        Path path = Files.createTempFile("coverage", ".collection");
+        Files.delete(path);
+        return path;
+    }
+
+    private static void recordEntries(CoverageReport report, int fork) {
+        for (int entry = 0; entry < ENTRIES; entry++) {
+            report.addTimedTestEntry("test " + entry % 50, "subject " + fork, entry, 1,
+                    "scenario " + entry % 7, "requirement " + entry % 11);
+        }
+    }
+}
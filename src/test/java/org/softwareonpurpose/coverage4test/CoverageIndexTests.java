@@ -0,0 +1,117 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Test
+public class CoverageIndexTests {
+    @Test
+    public void testGetTestsCovering() {
+        CoverageIndex index = getPopulatedReport().getIndex();
+        List<String> actual = toNames(index.getTestsCovering("requirement 1"));
+        Assert.assertEquals(actual, List.of("subject 1: test 1", "subject 1: test 4", "subject 2: test 1"),
+                "Failed to find the tests covering a requirement");
+    }
+
+    @Test
+    public void testGetSubjectsCovering() {
+        CoverageIndex index = getPopulatedReport().getIndex();
+        Assert.assertEquals(index.getSubjectsCovering("requirement 1"), List.of("subject 1", "subject 2"),
+                "Failed to find the subjects covering a requirement");
+    }
+
+    @Test
+    public void testGetRequirementsCoveredBy_subject() {
+        CoverageIndex index = getPopulatedReport().getIndex();
+        Assert.assertEquals(index.getRequirementsCoveredBy("subject 2"), List.of("requirement 0", "requirement 1", "shared"),
+                "Failed to find the requirements covered by a subject");
+    }
+
+    @Test
+    public void testGetRequirementsCoveredBy_test() {
+        CoverageIndex index = getPopulatedReport().getIndex();
+        Assert.assertEquals(index.getRequirementsCoveredBy("subject 1", "test 4"), List.of("requirement 1", "shared"),
+                "Failed to find the requirements covered by a test");
+    }
+
+    @Test
+    public void testGetScenarios() {
+        CoverageIndex index = getPopulatedReport().getIndex();
+        Assert.assertEquals(index.getScenarios("subject 1", "test 0"), List.of("\"scenario 0\"", "\"scenario 3\""),
+                "Failed to find the scenarios of a test");
+    }
+
+    @Test
+    public void testGetTestsWithScenario() {
+        CoverageIndex index = getPopulatedReport().getIndex();
+        List<String> actual = toNames(index.getTestsWithScenario("scenario 3"));
+        Assert.assertEquals(actual, List.of("subject 1: test 0", "subject 2: test 0"),
+                "Failed to find the tests which ran a scenario");
+    }
+
+    @Test
+    public void testGetTests_subject() {
+        CoverageIndex index = getPopulatedReport().getIndex();
+        Assert.assertEquals(toNames(index.getTests("subject 2")), List.of("subject 2: test 0", "subject 2: test 1"),
+                "Failed to find the tests of a subject");
+        Assert.assertEquals(index.getTest("subject 1", "test 2").getVerificationCount(), Integer.valueOf(2),
+                "Failed to find a test");
+        Assert.assertNull(index.getTest("subject 1", "test 9"), "Failed to find no unknown test");
+    }
+
+    @Test
+    public void testGetIndex_unknownKeys() {
+        CoverageIndex index = getPopulatedReport().getIndex();
+        Assert.assertTrue(index.getTestsCovering("unknown").isEmpty(), "Failed to find no tests of an unknown requirement");
+        Assert.assertTrue(index.getRequirementsCoveredBy("unknown").isEmpty(), "Failed to find no requirements of an unknown subject");
+        Assert.assertTrue(index.getScenarios("subject 1", "unknown").isEmpty(), "Failed to find no scenarios of an unknown test");
+        Assert.assertTrue(index.getTestsWithScenario("unknown").isEmpty(), "Failed to find no tests of an unknown scenario");
+    }
+
+    @Test
+    public void testGetIndex_snapshot() {
+        CoverageReport report = getPopulatedReport();
+        CoverageIndex index = report.getIndex();
+        report.addRequirementTestEntry("test 0", "subject 3", "requirement 1");
+        Assert.assertEquals(index.getTestsCovering("requirement 1").size(), 3, "Failed to keep a snapshot");
+        Assert.assertEquals(report.getIndex().getTestsCovering("requirement 1").size(), 4, "Failed to index new entries");
+    }
+
+    @Test
+    public void testGetIndex_viewsUnmodifiable() {
+        CoverageIndex index = getPopulatedReport().getIndex();
+        Assert.assertThrows(UnsupportedOperationException.class, () -> index.getTestsCovering("requirement 1").clear());
+        Assert.assertThrows(UnsupportedOperationException.class, () -> index.getSubjects().set(0, "subject"));
+    }
+
+    private static List<String> toNames(List<CoverageIndex.IndexedTest> tests) {
+        return tests.stream().map(CoverageIndex.IndexedTest::toString).collect(Collectors.toList());
+    }
+
+    private static CoverageReport getPopulatedReport() {
+        CoverageReport report = CoverageReport.getInstance();
+        for (int test = 0; test < 5; test++) {
+            report.addTestEntry("test " + test, "subject 1", test, "scenario " + test % 3, "requirement " + test % 3, "shared");
+            report.addTestEntry("test " + test, "subject 1", test, "scenario " + (test + 3) % 5);
+        }
+        report.addTestEntry("test 0", "subject 2", 1, "scenario 3", "requirement 0");
+        report.addTestEntry("test 1", "subject 2", 1, null, "requirement 1", "shared");
+        return report;
+    }
+}
@@ -0,0 +1,192 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+@Test
+public class CoverageJournalTests {
+    @Test
+    public void testReplay() throws IOException {
+        Path path = Files.createTempFile("coverage", ".journal");
+        try {
+            CoverageReport expected = CoverageReport.getInstance().journalTo(path);
+            recordEntries(expected, 0, 500);
+            expected.close();
+            CoverageReport actual = CoverageReport.replay(path);
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to rebuild report from journal");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testReplay_timed() throws IOException {
+        Path path = Files.createTempFile("coverage", ".journal");
+        try {
+            CoverageReport expected = CoverageReport.getInstance().journalTo(path);
+            expected.addTimedTestEntry("test 1", "feature 1", 1_500_000, 2, "scenario 1", "us-0001");
+            expected.addTimedTestEntry("test 1", "feature 1", 0, "scenario 2");
+            expected.close();
+            CoverageReport actual = CoverageReport.replay(path);
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to rebuild timing from journal");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testReplay_tornRecord() throws IOException {
+        Path path = Files.createTempFile("coverage", ".journal");
+        try {
+            CoverageReport expected = CoverageReport.getInstance().journalTo(path);
+            recordEntries(expected, 0, 10);
+            expected.close();
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.seek(file.length());
+                file.writeInt(100);
+                file.writeInt(0);
+                file.write(new byte[]{1, 2, 3});
+            }
+            CoverageReport actual = CoverageReport.replay(path);
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to replay records preceding a torn record");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testJournalTo_appendAfterTornRecord() throws IOException {
+        Path path = Files.createTempFile("coverage", ".journal");
+        try {
+            CoverageReport expected = CoverageReport.getInstance();
+            recordEntries(expected, 0, 20);
+            CoverageReport firstRun = CoverageReport.getInstance().journalTo(path);
+            recordEntries(firstRun, 0, 10);
+            firstRun.close();
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.seek(file.length());
+                file.writeInt(100);
+            }
+            CoverageReport secondRun = CoverageReport.replay(path).journalTo(path);
+            recordEntries(secondRun, 10, 20);
+            secondRun.close();
+            CoverageReport actual = CoverageReport.replay(path);
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to continue journal past a torn record");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testJournalTo_appendAfterZeroTail() throws IOException {
+        Path path = Files.createTempFile("coverage", ".journal");
+        try {
+            CoverageReport expected = CoverageReport.getInstance();
+            recordEntries(expected, 0, 20);
+            CoverageReport firstRun = CoverageReport.getInstance().journalTo(path);
+            recordEntries(firstRun, 0, 10);
+            firstRun.close();
+            long intactLength = Files.size(path);
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.seek(file.length());
+                file.write(new byte[4096]);
+            }
+            Assert.assertEquals(CoverageReport.replay(path).toString(), firstRun.toString(),
+                    "Failed to replay records preceding a zero-filled tail");
+            CoverageReport secondRun = CoverageReport.replay(path).journalTo(path);
+            Assert.assertEquals(Files.size(path), intactLength, "Failed to truncate a zero-filled tail");
+            recordEntries(secondRun, 10, 20);
+            secondRun.close();
+            CoverageReport actual = CoverageReport.replay(path);
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to continue journal past a zero-filled tail");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testReplay_hugeLength() throws IOException {
+        Path path = Files.createTempFile("coverage", ".journal");
+        try {
+            CoverageReport expected = CoverageReport.getInstance().journalTo(path);
+            recordEntries(expected, 0, 10);
+            expected.close();
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.seek(file.length());
+                file.writeInt(Integer.MAX_VALUE - 8);
+                file.writeInt(0x1234);
+                file.write(new byte[64]);
+            }
+            CoverageReport actual = CoverageReport.replay(path);
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to stop at a record longer than the journal");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testReplay_corruptStringLength() throws IOException {
+        Path path = Files.createTempFile("coverage", ".journal");
+        try {
+            CoverageReport expected = CoverageReport.getInstance().journalTo(path);
+            recordEntries(expected, 0, 10);
+            expected.close();
+            byte[] entry = {2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                    (byte) 0xFF, (byte) 0xFF, 0x01, 'x'};
+            CRC32C checksum = new CRC32C();
+            checksum.update(entry);
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.seek(file.length());
+                file.writeInt(entry.length);
+                file.writeInt((int) checksum.getValue());
+                file.write(entry);
+            }
+            CoverageReport actual = CoverageReport.replay(path);
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to stop at a record with a corrupt string length");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testReplay_notJournal() throws IOException {
+        Path path = Files.createTempFile("coverage", ".journal");
+        try {
+            Files.writeString(path, "{\"coverage\":\"system\"}");
+            Assert.assertThrows(IOException.class, () -> CoverageReport.replay(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static void recordEntries(CoverageReport report, int first, int last) {
+        for (int entry = first; entry < last; entry++) {
+            Map<String, Object> scenario = new TreeMap<>();
+            scenario.put("user", "user <" + entry % 13 + ">");
+            scenario.put("amount", entry * 1.5);
+            report.addTestEntry("test " + entry % 17, "subject " + entry % 5, entry % 3 == 0 ? null : entry % 4,
+                    entry % 6 == 0 ? null : scenario, "requirement " + entry % 9, null, "");
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Test
+public class CoverageReportMergerTests {
+    private static final int FORKS = 4;
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("coverage4test");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testWriteTo_completeReports() throws IOException {
+        CoverageReport expected = CoverageReport.getInstance();
+        List<Path> reports = new ArrayList<>();
+        for (int fork = 0; fork < FORKS; fork++) {
+            CoverageReport forkReport = CoverageReport.getInstance();
+            recordEntries(expected, fork);
+            recordEntries(forkReport, fork);
+            Path report = directory.resolve(String.format("fork%d.rpt", fork));
+            forkReport.writeTo(report);
+            reports.add(report);
+        }
+        StringWriter actual = new StringWriter();
+        CoverageReportMerger.getInstance(reports).writeTo(actual);
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to merge reports as a single report");
+    }
+
+    @Test
+    public void testWriteTo_separateReports() throws IOException {
+        CoverageReport expected = CoverageReport.getInstance();
+        List<Path> reports = new ArrayList<>();
+        for (int fork = 0; fork < FORKS; fork++) {
+            CoverageReport forkReport = CoverageReport.getInstance();
+            recordEntries(expected, fork);
+            recordEntries(forkReport, fork);
+            Path system = directory.resolve(String.format("fork%d.system.rpt", fork));
+            Path requirements = directory.resolve(String.format("fork%d.requirements.rpt", fork));
+            Files.writeString(system, forkReport.getSystemCoverage(), StandardCharsets.UTF_8);
+            Files.writeString(requirements, forkReport.getRequirementsCoverage(), StandardCharsets.UTF_8);
+            reports.add(system);
+            reports.add(requirements);
+        }
+        Path system = Files.createTempFile("system", ".json");
+        Path requirements = Files.createTempFile("requirements", ".json");
+        try {
+            CoverageReportMerger.getInstance(reports).writeTo(system, requirements);
+            Assert.assertEquals(Files.readString(system), expected.getSystemCoverage(), "Failed to merge system coverage");
+            Assert.assertEquals(Files.readString(requirements), expected.getRequirementsCoverage(), "Failed to merge requirements coverage");
+        } finally {
+            Files.deleteIfExists(system);
+            Files.deleteIfExists(requirements);
+        }
+    }
+
+    @Test
+    public void testRun_directory() throws IOException {
+        CoverageReport expected = CoverageReport.getInstance();
+        for (int fork = 0; fork < FORKS; fork++) {
+            CoverageReport forkReport = CoverageReport.getInstance();
+            recordEntries(expected, fork);
+            recordEntries(forkReport, fork);
+            forkReport.writeTo(directory.resolve(String.format("fork%d.rpt", fork)));
+        }
+        Path output = Files.createTempFile("coverage", ".json");
+        try {
+            int status = CoverageReportMerger.run(new String[]{"--output", output.toString(), directory.toString()},
+                    System.out, System.err);
+            Assert.assertEquals(status, 0, "Failed to merge reports of a directory");
+            Assert.assertEquals(Files.readString(output), expected.toString(), "Failed to merge reports of a directory");
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Test
+    public void testRun_usage() throws IOException {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = CoverageReportMerger.run(new String[]{"--unknown", "value"}, System.out, new PrintStream(err, true,
+                StandardCharsets.UTF_8));
+        Assert.assertEquals(status, 2, "Failed to return the usage error status");
+        Assert.assertTrue(err.toString(StandardCharsets.UTF_8).contains("Usage:"), "Failed to describe usage");
+    }
+
+    @Test
+    public void testWriteTo_emptyReports() throws IOException {
+        Path report = directory.resolve("empty.rpt");
+        CoverageReport.getInstance().writeTo(report);
+        StringWriter actual = new StringWriter();
+        CoverageReportMerger.getInstance(List.of(report, report)).writeTo(actual);
+        Assert.assertEquals(actual.toString(), CoverageReport.getInstance().toString(), "Failed to merge empty reports");
+    }
+
+    @Test
+    public void testWriteTo_unsortedReport() throws IOException {
+        Path report = directory.resolve("unsorted.rpt");
+        Files.writeString(report, "{\"coverage\":\"system\",\"subjects\":[{\"subject\":\"b\",\"tests\":[{\"test\":\"1\"}]},{\"subject\":\"a\",\"tests\":[{\"test\":\"1\"}]}]}");
+        Assert.assertThrows(IOException.class, () -> CoverageReportMerger.getInstance(List.of(report)).writeTo(new StringWriter()));
+    }
+
+    private static void recordEntries(CoverageReport report, int fork) {
+        for (int entry = 0; entry < 300; entry++) {
+            int test = (entry * 7 + fork) % 40;
+            String requirement = entry % (fork + 2) == 0 ? "requirement " + (entry + fork) % 9 : null;
+            report.addTestEntry("test " + test, "subject " + test % 6, test % 3, "scenario <" + (entry + fork * 5) % 23 + ">", requirement);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+@Test
+public class CoverageReportMetricsTests {
+    @Test
+    public void testGetEntryCount() {
+        CoverageReportMetrics metrics = getPopulatedReport().getMetrics();
+        Assert.assertEquals(metrics.getEntryCount(), 5, "Failed to count entries");
+        Assert.assertTrue(metrics.getEntryRate() > 0, "Failed to report entry rate");
+    }
+
+    @Test
+    public void testGetScenarioCounts() {
+        CoverageReportMetrics metrics = getPopulatedReport().getMetrics();
+        Assert.assertEquals(metrics.getSerializationCount(), 4, "Failed to count serialized test data");
+        Assert.assertEquals(metrics.getScenarioCount(), 2, "Failed to count distinct scenarios");
+        Assert.assertEquals(metrics.getTestScenarioCount(), 3, "Failed to count scenarios of each test");
+        Assert.assertEquals(metrics.getDuplicateScenarioCount(), 1, "Failed to count duplicate scenarios of a test");
+    }
+
+    @Test
+    public void testGetRequirementCounts() {
+        CoverageReportMetrics metrics = getPopulatedReport().getMetrics();
+        Assert.assertEquals(metrics.getRequirementCount(), 3, "Failed to count requirements");
+        Assert.assertEquals(metrics.getRequirementLinkCount(), 4, "Failed to count requirement links");
+        Assert.assertEquals(metrics.getMaxRequirementFanOut(), 3, "Failed to report maximum requirement fan-out");
+        Assert.assertEquals(metrics.getMeanRequirementFanOut(), 1.2, 1e-9, "Failed to report mean requirement fan-out");
+    }
+
+    @Test
+    public void testGetEstimatedRetainedBytes() {
+        CoverageReport report = getPopulatedReport();
+        long before = report.getMetrics().getEstimatedRetainedBytes();
+        report.addTestEntry("test 3", "feature 1", "x".repeat(10_000));
+        long actual = report.getMetrics().getEstimatedRetainedBytes() - before;
+        Assert.assertTrue(actual > 10_000 && actual < 11_000, "Failed to estimate retained bytes of a new test: " + actual);
+    }
+
+    @Test
+    public void testGetRenderedCharCount() {
+        CoverageReport report = getPopulatedReport();
+        String rendered = report.toString();
+        CoverageReportMetrics metrics = report.getMetrics();
+        Assert.assertEquals(metrics.getRenderCount(), 1, "Failed to count renders");
+        Assert.assertEquals(metrics.getLastRenderedCharCount(), rendered.length(), "Failed to measure rendered report");
+        Assert.assertTrue(metrics.getRenderNanos() > 0, "Failed to time rendering");
+    }
+
+    @Test
+    public void testRegisterMetrics() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.softwareonpurpose.coverage4test:type=CoverageReport,name=\"suite 1\"");
+        CoverageReport report = getPopulatedReport().registerMetrics("suite 1");
+        Assert.assertEquals(server.getAttribute(name, "EntryCount"), 5L, "Failed to expose metrics through JMX");
+        report.close();
+        Assert.assertFalse(server.isRegistered(name), "Failed to unregister metrics on close");
+    }
+
+    private static CoverageReport getPopulatedReport() {
+        CoverageReport report = CoverageReport.getInstance();
+        report.addTestEntry("test 1", "feature 1", 1, "scenario 1", "us-0001", "us-0002", "us-0003");
+        report.addTestEntry("test 1", "feature 1", 1, "scenario 1", "us-0001");
+        report.addTestEntry("test 1", "feature 1", 1, "scenario 2", "us-0002");
+        report.addTestEntry("test 2", "feature 1", 1, "scenario 1", "us-0001");
+        report.addTestEntry("test 2", "feature 1");
+        return report;
+    }
+}
@@ -17,6 +17,17 @@ import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
 @Test
 public class CoverageReportTests {
     @DataProvider
@@ -143,6 +154,57 @@ public class CoverageReportTests {
         Assert.assertEquals(actual, expected, "Failed added duplicate test");
     }
 
+    @Test
+    public void testAddEntry_sameTestDifferentSubjects() {
+        int expected = 2;
+        CoverageReport report = CoverageReport.getInstance();
+        String testName = "Test 1";
+        report.addTestEntry(testName, "Feature 1");
+        report.addTestEntry(testName, "Feature 2");
+        report.addTestEntry(testName, "Feature 1");
+        int actual = report.getTestCount();
+        Assert.assertEquals(actual, expected, "Failed to distinguish tests of the same name for different subjects");
+    }
+
+    @Test
+    public void testGetCoverage_interleavedEntries() {
+        String expectedSystem = "{\"coverage\":\"system\",\"subjects\":["
+                + "{\"subject\":\"feature 1\",\"tests\":["
+                + "{\"test\":\"test 1\",\"verificationCount\":2,\"scenarios\":[{\"scenario\":\"scenario a\"},{\"scenario\":\"scenario c\"}]},"
+                + "{\"test\":\"test 3\",\"scenarios\":[{\"scenario\":42}]}]},"
+                + "{\"subject\":\"feature 2\",\"tests\":["
+                + "{\"test\":\"test 1\",\"verificationCount\":3,\"scenarios\":[{\"scenario\":\"scenario b\"},{\"scenario\":{\"rows\":3,\"user\":\"admin\"}}]},"
+                + "{\"test\":\"test 2\",\"verificationCount\":1,\"scenarios\":[{\"scenario\":\"scenario a\"},{\"scenario\":\"scenario b\"}]}]}]}";
+        String expectedRequirements = "{\"coverage\":\"requirements\",\"requirements\":["
+                + "{\"requirement\":\"us-0001\",\"subjects\":["
+                + "{\"subject\":\"feature 1\",\"tests\":["
+                + "{\"test\":\"test 1\",\"verificationCount\":2,\"scenarios\":[{\"scenario\":\"scenario a\"},{\"scenario\":\"scenario c\"}]}]},"
+                + "{\"subject\":\"feature 2\",\"tests\":["
+                + "{\"test\":\"test 1\",\"verificationCount\":3,\"scenarios\":[{\"scenario\":\"scenario b\"},{\"scenario\":{\"rows\":3,\"user\":\"admin\"}}]},"
+                + "{\"test\":\"test 2\",\"verificationCount\":1,\"scenarios\":[{\"scenario\":\"scenario a\"},{\"scenario\":\"scenario b\"}]}]}]},"
+                + "{\"requirement\":\"us-0002\",\"subjects\":["
+                + "{\"subject\":\"feature 1\",\"tests\":["
+                + "{\"test\":\"test 1\",\"verificationCount\":2,\"scenarios\":[{\"scenario\":\"scenario a\"},{\"scenario\":\"scenario c\"}]}]}]},"
+                + "{\"requirement\":\"us-0003\",\"subjects\":["
+                + "{\"subject\":\"feature 2\",\"tests\":["
+                + "{\"test\":\"test 2\",\"verificationCount\":1,\"scenarios\":[{\"scenario\":\"scenario a\"},{\"scenario\":\"scenario b\"}]}]}]}]}";
+        Map<String, Object> row = new TreeMap<>();
+        row.put("user", "admin");
+        row.put("rows", 3);
+        CoverageReport report = CoverageReport.getInstance();
+        report.addTestEntry("test 2", "feature 2", 1, "scenario b", "us-0003");
+        report.addTestEntry("test 1", "feature 1", 2, "scenario a", "us-0001", "us-0002");
+        report.addTestEntry("test 1", "feature 2", 3, row, "us-0001");
+        report.addTestEntry("test 1", "feature 1", 5, "scenario c", "us-0002");
+        report.addTestEntry("test 2", "feature 2", 4, "scenario a", "us-0003", "us-0001");
+        report.addTestEntry("test 1", "feature 1", 2, "scenario a", "us-0001");
+        report.addTestEntry("test 3", "feature 1", null, 42L);
+        report.addTestEntry("test 1", "feature 2", 3, "scenario b");
+        Assert.assertEquals(report.getSystemCoverage(), expectedSystem, "Failed to render System Coverage as before indexing tests");
+        Assert.assertEquals(report.getRequirementsCoverage(), expectedRequirements,
+                "Failed to render Requirements Coverage as before indexing tests");
+    }
+
     @Test
     public void testGetSystemCoverage_noTests() {
         String expected = "{\"coverage\":\"system\"}";
@@ -329,4 +391,126 @@ public class CoverageReportTests {
         String actual = report.getRequirementsCoverage();
         Assert.assertEquals(actual, expected);
     }
+
+    @Test
+    public void testToString() {
+        String requirement = "us-0001";
+        String testName = "test 1";
+        String testSubject = "feature 1";
+        String expected = String.format("{\"coverageReport\":{\"reports\":[{\"coverage\":\"system\",\"subjects\":[{\"subject\":\"%s\",\"tests\":[{\"test\":\"%s\"}]}]},{\"coverage\":\"requirements\",\"requirements\":[{\"requirement\":\"%s\",\"subjects\":[{\"subject\":\"%s\",\"tests\":[{\"test\":\"%s\"}]}]}]}]}}", testSubject, testName, requirement, testSubject, testName);
+        CoverageReport report = CoverageReport.getInstance();
+        report.addRequirementTestEntry(testName, testSubject, requirement);
+        String actual = report.toString();
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testWriteSystemCoverage() throws IOException {
+        CoverageReport report = getPopulatedReport();
+        StringWriter actual = new StringWriter();
+        report.writeSystemCoverage(actual);
+        Assert.assertEquals(actual.toString(), report.getSystemCoverage(), "Failed to stream the System Coverage report");
+    }
+
+    @Test
+    public void testWriteRequirementsCoverage() throws IOException {
+        CoverageReport report = getPopulatedReport();
+        StringWriter actual = new StringWriter();
+        report.writeRequirementsCoverage(actual);
+        Assert.assertEquals(actual.toString(), report.getRequirementsCoverage(), "Failed to stream the Requirements Coverage report");
+    }
+
+    @Test
+    public void testWriteTo_path() throws IOException {
+        CoverageReport report = getPopulatedReport();
+        Path path = Files.createTempFile("coverage", ".rpt");
+        try {
+            report.writeTo(path);
+            String actual = Files.readString(path, StandardCharsets.UTF_8);
+            Assert.assertEquals(actual, report.toString(), "Failed to write the report to a file");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testCaptureTestData() {
+        String expected = getPopulatedReport().toString();
+        CoverageReport report = CoverageReport.getInstance().captureTestData();
+        report.addTestEntry("test 1", "feature 1", 2, "scenario 1", "us-0001", "us-0002");
+        report.addTestEntry("test 1", "feature 1", 2, "scenario 2", "us-0001");
+        report.addTestEntry("test 2", "feature 1", 1, 99L, "us-0002");
+        report.addTestEntry("test 1", "feature 2");
+        Assert.assertEquals(report.toString(), expected, "Failed to report captured test data");
+    }
+
+    @Test
+    public void testCaptureTestData_released() {
+        CoverageReport report = CoverageReport.getInstance().captureTestData();
+        Object testData = new ArrayList<>(List.of("fixture"));
+        WeakReference<Object> reference = new WeakReference<>(testData);
+        report.addTestEntry("test 1", "feature 1", testData);
+        //noinspection UnusedAssignment
+        testData = null;
+        for (int collection = 0; collection < 10 && reference.get() != null; collection++) {
+            System.gc();
+        }
+        Assert.assertNull(reference.get(), "Failed to release captured test data");
+        Assert.assertTrue(report.getSystemCoverage().contains("{\"scenario\":[\"fixture\"]}"), "Failed to report released test data");
+    }
+
+    @Test
+    public void testAddTestEntry_releasesTestData() {
+        CoverageReport report = CoverageReport.getInstance();
+        Object testData = new ArrayList<>(List.of("fixture"));
+        WeakReference<Object> reference = new WeakReference<>(testData);
+        report.addTestEntry("test 1", "feature 1", testData);
+        //noinspection UnusedAssignment
+        testData = null;
+        for (int collection = 0; collection < 10 && reference.get() != null; collection++) {
+            System.gc();
+        }
+        Assert.assertNull(reference.get(), "Failed to release recorded test data");
+        Assert.assertTrue(report.getSystemCoverage().contains("{\"scenario\":[\"fixture\"]}"), "Failed to report released test data");
+    }
+
+    @Test
+    public void testGetScenarioPoolHitCount() {
+        CoverageReport report = CoverageReport.getInstance();
+        report.addTestEntry("test 1", "feature 1", "scenario 1");
+        report.addTestEntry("test 2", "feature 1", "scenario 1");
+        report.addTestEntry("test 1", "feature 2", "scenario 1");
+        report.addTestEntry("test 1", "feature 2", "scenario 2");
+        Assert.assertEquals(report.getScenarioPoolHitCount(), 2, "Failed to share scenarios reused across tests");
+        Assert.assertEquals(report.getScenarioPoolMissCount(), 2, "Failed to count distinct scenarios");
+    }
+
+    @Test
+    public void testAddTimedTestEntry() {
+        CoverageReport report = CoverageReport.getInstance();
+        report.addTimedTestEntry("test 1", "feature 1", 2_000, "scenario 1");
+        report.addTimedTestEntry("test 1", "feature 1", 5_000, "scenario 2");
+        report.addTestEntry("test 1", "feature 1", "scenario 3");
+        String expected = "{\"coverage\":\"system\",\"subjects\":[{\"subject\":\"feature 1\",\"tests\":[{\"test\":\"test 1\","
+                + "\"scenarios\":[{\"scenario\":\"scenario 1\",\"timing\":{\"count\":1,\"p50Nanos\":2000,\"p99Nanos\":2000,\"maxNanos\":2000}},"
+                + "{\"scenario\":\"scenario 2\",\"timing\":{\"count\":1,\"p50Nanos\":5000,\"p99Nanos\":5000,\"maxNanos\":5000}},"
+                + "{\"scenario\":\"scenario 3\"}],"
+                + "\"timing\":{\"count\":2,\"p50Nanos\":2047,\"p99Nanos\":5000,\"maxNanos\":5000}}]}]}";
+        Assert.assertEquals(report.getSystemCoverage(), expected, "Failed to report test and scenario timing");
+    }
+
+    @Test
+    public void testAddTimedTestEntry_negative() {
+        CoverageReport report = CoverageReport.getInstance();
+        Assert.assertThrows(IllegalArgumentException.class, () -> report.addTimedTestEntry("test 1", "feature 1", -1, null));
+    }
+
+    private static CoverageReport getPopulatedReport() {
+        CoverageReport report = CoverageReport.getInstance();
+        report.addTestEntry("test 1", "feature 1", 2, "scenario 1", "us-0001", "us-0002");
+        report.addTestEntry("test 1", "feature 1", 2, "scenario 2", "us-0001");
+        report.addTestEntry("test 2", "feature 1", 1, 99L, "us-0002");
+        report.addTestEntry("test 1", "feature 2");
+        return report;
+    }
 }
@@ -147,4 +147,23 @@ public class ExecutedTestTests {
         ExecutedTest actual = ExecutedTest.getInstance("test 1", "feature 1", 1, null);
         Assert.assertEquals(actual.getScenarios().size(), expected, "Failed to validate a scenario not accepting null");
     }
+
+    @Test
+    public void testToString() {
+        String expected = "{\"test\":\"test \\u003c1\\u003e\",\"verificationCount\":2,\"scenarios\":[{\"scenario\":\"scenario 1\"},{\"scenario\":99},{}]}";
+        ExecutedTest test = ExecutedTest.getInstance("test <1>", "feature 1", 2, Scenario.getInstance("scenario 1"));
+        //noinspection ConstantConditions
+        test.addScenarios(Arrays.asList(Scenario.getInstance(99), Scenario.getInstance(null)));
+        String actual = test.toString();
+        Assert.assertEquals(actual, expected, "Failed to return JSON of test, verification count and scenarios");
+    }
+
+    @Test
+    public void testToString_noScenarios() {
+        String expected = "{\"test\":\"test 1\"}";
+        ExecutedTest test = ExecutedTest.getInstance("test 1", "feature 1", null, null);
+        //noinspection ConstantConditions
+        String actual = test.toString();
+        Assert.assertEquals(actual, expected, "Failed to omit absent verification count and scenarios");
+    }
 }
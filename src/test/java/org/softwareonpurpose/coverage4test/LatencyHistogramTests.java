@@ -0,0 +1,69 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class LatencyHistogramTests {
+    @Test
+    public void testGetPercentile_withinBucketError() {
+        LatencyHistogram histogram = LatencyHistogram.getInstance();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+        long p50 = histogram.getPercentile(50);
+        long p99 = histogram.getPercentile(99);
+        Assert.assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.125, "Failed to estimate p50 within 12.5%: " + p50);
+        Assert.assertTrue(p99 >= 990_000 && p99 <= 990_000 * 1.125, "Failed to estimate p99 within 12.5%: " + p99);
+    }
+
+    @Test
+    public void testGetMax_exact() {
+        LatencyHistogram histogram = LatencyHistogram.getInstance();
+        histogram.record(1_234_567);
+        histogram.record(3);
+        Assert.assertEquals(histogram.getMax(), 1_234_567, "Failed to record exact maximum");
+        Assert.assertEquals(histogram.getPercentile(100), 1_234_567, "Failed to cap percentile at maximum");
+    }
+
+    @Test
+    public void testRecord_growsBothWays() {
+        LatencyHistogram histogram = LatencyHistogram.getInstance();
+        histogram.record(1_000_000);
+        histogram.record(5);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(histogram.getCount(), 3, "Failed to count values across the range");
+        Assert.assertEquals(histogram.getPercentile(1), 5, "Failed to record small value exactly");
+        Assert.assertEquals(histogram.getPercentile(50), 1_048_575, "Failed to record value in its bucket");
+    }
+
+    @Test
+    public void testAdd() {
+        LatencyHistogram expected = LatencyHistogram.getInstance();
+        LatencyHistogram first = LatencyHistogram.getInstance();
+        LatencyHistogram second = LatencyHistogram.getInstance();
+        for (long value = 1; value <= 1000; value++) {
+            expected.record(value * 997);
+            (value % 2 == 0 ? first : second).record(value * 997);
+        }
+        first.add(second);
+        LatencyHistogram actual = LatencyHistogram.getInstance(first.getFirstBucket(), first.getBucketCounts(), first.getMax());
+        Assert.assertEquals(actual.getCount(), expected.getCount(), "Failed to add counts");
+        Assert.assertEquals(actual.getPercentile(50), expected.getPercentile(50), "Failed to add buckets");
+        Assert.assertEquals(actual.getPercentile(99), expected.getPercentile(99), "Failed to add buckets");
+        Assert.assertEquals(actual.getMax(), expected.getMax(), "Failed to add maximum");
+    }
+}
@@ -0,0 +1,86 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Test
+public class LoadCoverageReportTests {
+    @Test
+    public void testLoad_completeReport() throws IOException {
+        CoverageReport expected = getPopulatedReport();
+        CoverageReport actual = CoverageReport.load(new StringReader(expected.toString()));
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to load a complete report");
+    }
+
+    @Test
+    public void testLoad_systemCoverage() throws IOException {
+        CoverageReport expected = getPopulatedReport();
+        CoverageReport actual = CoverageReport.load(new StringReader(expected.getSystemCoverage()));
+        Assert.assertEquals(actual.getSystemCoverage(), expected.getSystemCoverage(), "Failed to load a System Coverage report");
+        Assert.assertEquals(actual.getRequirementsCoverage(), "{\"coverage\":\"requirements\"}", "Failed to load no requirements");
+    }
+
+    @Test
+    public void testLoad_requirementsCoverage() throws IOException {
+        CoverageReport expected = getPopulatedReport();
+        CoverageReport actual = CoverageReport.load(new StringReader(expected.getRequirementsCoverage()));
+        Assert.assertEquals(actual.getRequirementsCoverage(), expected.getRequirementsCoverage(), "Failed to load a Requirements Coverage report");
+    }
+
+    @Test
+    public void testLoad_extend() throws IOException {
+        CoverageReport expected = getPopulatedReport();
+        expected.addTestEntry("test 1", "subject 1", 7, "new scenario", "new requirement");
+        expected.addTestEntry("new test", "subject 1");
+        Path path = Files.createTempFile("coverage", ".rpt");
+        try {
+            getPopulatedReport().writeTo(path);
+            CoverageReport actual = CoverageReport.load(path);
+            actual.addTestEntry("test 1", "subject 1", 7, "new scenario", "new requirement");
+            actual.addTestEntry("new test", "subject 1");
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to extend a loaded report");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testLoad_notReport() {
+        Assert.assertThrows(IOException.class, () -> CoverageReport.load(new StringReader("{\"tests\":[]}")));
+    }
+
+    private static CoverageReport getPopulatedReport() {
+        CoverageReport report = CoverageReport.getInstance();
+        for (int entry = 0; entry < 200; entry++) {
+            Map<String, Object> scenario = new TreeMap<>();
+            scenario.put("id", entry % 17);
+            scenario.put("values", List.of(entry * 0.25, "<" + entry % 3 + ">", entry % 2 == 0));
+            Object testData = entry % 5 == 0 ? null : entry % 5 == 1 ? "scenario '" + entry % 4 : scenario;
+            report.addTestEntry("test " + entry % 13, "subject " + entry % 4, entry % 3 == 0 ? null : entry % 13,
+                    testData, "requirement " + entry % 7, entry % 2 == 0 ? "requirement \u00e9" : null);
+        }
+        report.addTestEntry("no scenarios", "subject 1");
+        return report;
+    }
+}
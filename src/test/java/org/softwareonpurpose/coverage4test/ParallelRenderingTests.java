@@ -0,0 +1,80 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Test
+public class ParallelRenderingTests {
+    private static final int SUBJECTS = 12;
+    private static final int REQUIREMENTS = 30;
+    private static final int SCENARIOS_PER_TEST = 4;
+
+    @Test
+    public void testRenderInParallel() {
+        CoverageReport expected = populate(CoverageReport.getInstance());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CoverageReport actual = populate(CoverageReport.getInstance().renderInParallel(executor));
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to render in parallel in report order");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRenderInParallel_cachedFragments() {
+        CoverageReport expected = populate(CoverageReport.getInstance());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CoverageReport actual = populate(CoverageReport.getInstance().renderInParallel(executor).cacheRenderedFragments());
+            actual.toString();
+            expected.addTestEntry("test 0", "subject 3", 1, "new scenario", "requirement 9");
+            actual.addTestEntry("test 0", "subject 3", 1, "new scenario", "requirement 9");
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to render cached fragments in parallel");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRenderInParallel_commonPool() {
+        CoverageReport expected = populate(CoverageReport.getInstance());
+        CoverageReport actual = populate(CoverageReport.getConcurrentInstance().renderInParallel());
+        Assert.assertEquals(actual.getSystemCoverage(), expected.getSystemCoverage(), "Failed to render System Coverage in parallel");
+        Assert.assertEquals(actual.getRequirementsCoverage(), expected.getRequirementsCoverage(), "Failed to render Requirements Coverage in parallel");
+    }
+
+    /***
+     * Record subjects of uneven size, and requirements linking tests of several subjects, so that fragments
+     * of very different lengths complete out of report order
+     */
+    private static CoverageReport populate(CoverageReport report) {
+        for (int subject = 0; subject < SUBJECTS; subject++) {
+            int tests = 1 + subject * subject * 3;
+            for (int test = 0; test < tests; test++) {
+                for (int scenario = 0; scenario < SCENARIOS_PER_TEST; scenario++) {
+                    report.addTestEntry("test " + test, "subject " + subject, 1, Map.of("step", scenario, "subject", subject),
+                            "requirement " + (subject + test) % REQUIREMENTS);
+                }
+            }
+        }
+        return report;
+    }
+}
@@ -0,0 +1,74 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import com.google.gson.stream.JsonWriter;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class RenderedFragmentTests {
+    @Test
+    public void testWriteTo_cached() throws IOException {
+        RenderedFragment fragment = RenderedFragment.getInstance();
+        AtomicInteger renders = new AtomicInteger();
+        render(fragment, renders);
+        String actual = render(fragment, renders);
+        Assert.assertEquals(actual, "{\"render\":1}", "Failed to write cached fragment");
+        Assert.assertEquals(renders.get(), 1, "Failed to reuse rendered fragment");
+    }
+
+    @Test
+    public void testWriteTo_invalidated() throws IOException {
+        RenderedFragment fragment = RenderedFragment.getInstance();
+        AtomicInteger renders = new AtomicInteger();
+        render(fragment, renders);
+        fragment.invalidate();
+        String actual = render(fragment, renders);
+        Assert.assertEquals(actual, "{\"render\":2}", "Failed to re-render invalidated fragment");
+    }
+
+    @Test
+    public void testCacheRenderedFragments() {
+        CoverageReport expected = CoverageReport.getInstance();
+        CoverageReport actual = CoverageReport.getInstance().cacheRenderedFragments();
+        for (CoverageReport report : new CoverageReport[]{expected, actual}) {
+            report.addTestEntry("test 1", "feature 1", 1, "scenario 1", "us-0001");
+            report.addTestEntry("test 1", "feature 2", 1, "scenario 1", "us-0002");
+        }
+        String[] changes = {"test 2|feature 1|scenario 1|us-0001", "test 1|feature 1|scenario 2|us-0001",
+                "test 1|feature 2|scenario 1|us-0001", "test 1|feature 3|scenario 1|us-0003", "test 1|feature 1|scenario 2|"};
+        for (String change : changes) {
+            String[] entry = change.split("\\|", -1);
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to render cached report before " + change);
+            expected.addTestEntry(entry[0], entry[1], 1, entry[2], entry[3]);
+            actual.addTestEntry(entry[0], entry[1], 1, entry[2], entry[3]);
+        }
+        expected.addTimedTestEntry("test 1", "feature 2", 10, "scenario 1");
+        actual.addTimedTestEntry("test 1", "feature 2", 10, "scenario 1");
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to re-render changed fragments");
+    }
+
+    private static String render(RenderedFragment fragment, AtomicInteger renders) throws IOException {
+        StringWriter output = new StringWriter();
+        JsonWriter json = new JsonWriter(output);
+        fragment.writeTo(json, out -> out.beginObject().name("render").value(renders.incrementAndGet()).endObject());
+        json.flush();
+        return output.toString();
+    }
+}
@@ -0,0 +1,93 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+@Test
+public class RequirementCatalogTests {
+    private static final String CATALOG = "# product requirements\nREQ-1\nREQ-2\n\nREQ-3\n  REQ-4  \nREQ-5\nREQ-2\n";
+
+    @Test
+    public void testLoad() throws IOException {
+        RequirementCatalog catalog = RequirementCatalog.load(new StringReader(CATALOG));
+        Assert.assertEquals(catalog.getRequirements(), List.of("REQ-1", "REQ-2", "REQ-3", "REQ-4", "REQ-5"),
+                "Failed to read requirements in catalog order, ignoring comments, blanks and repeats");
+    }
+
+    @Test
+    public void testGetCoverage() throws IOException {
+        RequirementCatalog.CatalogCoverage coverage = RequirementCatalog.load(new StringReader(CATALOG)).getCoverage(getReport());
+        Assert.assertEquals(coverage.getCovered().getRequirements(), List.of("REQ-1", "REQ-2", "REQ-4"), "Failed to find covered requirements");
+        Assert.assertEquals(coverage.getUncovered().getRequirements(), List.of("REQ-3", "REQ-5"), "Failed to find uncovered requirements");
+        Assert.assertEquals(coverage.getCoveredBySingleSubject().getRequirements(), List.of("REQ-1", "REQ-4"),
+                "Failed to find requirements covered by one subject");
+        Assert.assertEquals(coverage.getUncatalogued(), List.of("REQ-9"), "Failed to find uncatalogued requirements");
+    }
+
+    @Test
+    public void testGetCoverage_index() throws IOException {
+        RequirementCatalog catalog = RequirementCatalog.load(new StringReader(CATALOG));
+        CoverageReport report = getReport();
+        RequirementCatalog.CatalogCoverage expected = catalog.getCoverage(report);
+        RequirementCatalog.CatalogCoverage actual = catalog.getCoverage(report.getIndex());
+        Assert.assertEquals(actual.getCovered().getRequirements(), expected.getCovered().getRequirements(), "Failed to find covered requirements of an index");
+        Assert.assertEquals(actual.getCoveredBySingleSubject().getRequirements(), expected.getCoveredBySingleSubject().getRequirements(),
+                "Failed to find requirements covered by one subject of an index");
+    }
+
+    @Test
+    public void testGetNewlyCovered() throws IOException {
+        RequirementCatalog catalog = RequirementCatalog.load(new StringReader(CATALOG));
+        RequirementCatalog.CatalogCoverage previous = catalog.getCoverage(getReport());
+        CoverageReport report = CoverageReport.getInstance();
+        report.addRequirementTestEntry("test 1", "subject 1", "REQ-1", "REQ-3");
+        RequirementCatalog.CatalogCoverage current = catalog.getCoverage(report);
+        Assert.assertEquals(current.getNewlyCovered(previous).getRequirements(), List.of("REQ-3"), "Failed to find newly covered requirements");
+        Assert.assertEquals(current.getNoLongerCovered(previous).getRequirements(), List.of("REQ-2", "REQ-4"),
+                "Failed to find requirements no longer covered");
+    }
+
+    @Test
+    public void testRequirementSet_algebra() {
+        RequirementCatalog catalog = RequirementCatalog.getInstance(List.of("A", "B", "C", "D"));
+        RequirementSet first = catalog.getSet(List.of("A", "B", "X"));
+        RequirementSet second = catalog.getSet(List.of("B", "C"));
+        Assert.assertEquals(first.and(second).getRequirements(), List.of("B"), "Failed to intersect sets");
+        Assert.assertEquals(first.or(second).getRequirements(), List.of("A", "B", "C"), "Failed to unite sets");
+        Assert.assertEquals(first.andNot(second).getRequirements(), List.of("A"), "Failed to subtract sets");
+        Assert.assertTrue(first.contains("A") && !first.contains("X"), "Failed to test membership");
+        Assert.assertEquals(first.size(), 2, "Failed to count members");
+    }
+
+    @Test
+    public void testRequirementSet_differentCatalogs() {
+        RequirementSet first = RequirementCatalog.getInstance(List.of("A")).getSet(List.of("A"));
+        RequirementSet second = RequirementCatalog.getInstance(List.of("A")).getSet(List.of("A"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> first.and(second));
+    }
+
+    private static CoverageReport getReport() {
+        CoverageReport report = CoverageReport.getInstance();
+        report.addRequirementTestEntry("test 1", "subject 1", "REQ-1", "REQ-2");
+        report.addRequirementTestEntry("test 2", "subject 1", "REQ-1");
+        report.addRequirementTestEntry("test 1", "subject 2", "REQ-2", "REQ-4", "REQ-9");
+        return report;
+    }
+}
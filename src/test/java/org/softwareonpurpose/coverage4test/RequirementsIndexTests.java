@@ -0,0 +1,68 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+
+@Test
+public class RequirementsIndexTests {
+    @Test
+    public void testLink_duplicateLink() {
+        List<ExecutedTest> tests = new ArrayList<>();
+        RequirementsIndex index = RequirementsIndex.getInstance(false, tests::get);
+        ExecutedTest test = getRegisteredTest(tests, "test 1", "feature 1");
+        index.link("us-0001", test);
+        index.link("us-0001", test);
+        int actual = index.getRequirements().iterator().next().getSubjects().get("feature 1").length;
+        Assert.assertEquals(actual, 1, "Failed to ignore duplicate link of a test to a requirement");
+    }
+
+    @Test
+    public void testGetSubjects_sorted() {
+        List<ExecutedTest> tests = new ArrayList<>();
+        RequirementsIndex index = RequirementsIndex.getInstance(false, tests::get);
+        index.link("us-0001", getRegisteredTest(tests, "test 2", "feature 2"));
+        index.link("us-0001", getRegisteredTest(tests, "test 2", "feature 1"));
+        index.link("us-0001", getRegisteredTest(tests, "test 1", "feature 1"));
+        SortedMap<String, int[]> subjects = index.getRequirements().iterator().next().getSubjects();
+        Assert.assertEquals(subjects.firstKey(), "feature 1", "Failed to sort subjects of a requirement");
+        int[] featureTests = subjects.get("feature 1");
+        Assert.assertEquals(tests.get(featureTests[0]).getTestName(), "test 1", "Failed to sort tests of a subject");
+        Assert.assertEquals(tests.get(featureTests[1]).getTestName(), "test 2", "Failed to sort tests of a subject");
+    }
+
+    @Test
+    public void testGetRequirements_sorted() {
+        List<ExecutedTest> tests = new ArrayList<>();
+        RequirementsIndex index = RequirementsIndex.getInstance(false, tests::get);
+        ExecutedTest test = getRegisteredTest(tests, "test 1", "feature 1");
+        index.link("us-0002", test);
+        index.link("MEM-1051", test);
+        String actual = index.getRequirements().iterator().next().getName();
+        Assert.assertEquals(actual, "MEM-1051", "Failed to sort requirements");
+    }
+
+    private static ExecutedTest getRegisteredTest(List<ExecutedTest> tests, String testName, String subject) {
+        ExecutedTest test = ExecutedTest.getInstance(testName, subject, null, null);
+        //noinspection ConstantConditions
+        test.setId(tests.size());
+        tests.add(test);
+        return test;
+    }
+}
@@ -0,0 +1,48 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class ScenarioPoolTests {
+    @Test
+    public void testIntern_sharesDuplicate() {
+        ScenarioPool pool = ScenarioPool.getInstance(false);
+        Scenario expected = pool.intern(Scenario.getInstance("scenario"));
+        Scenario actual = pool.intern(Scenario.getInstance("scenario"));
+        Assert.assertSame(actual, expected, "Failed to share a duplicate scenario");
+    }
+
+    @Test
+    public void testIntern_assignsIds() {
+        ScenarioPool pool = ScenarioPool.getInstance(true);
+        int first = pool.intern(Scenario.getInstance("scenario 1")).getId();
+        int second = pool.intern(Scenario.getInstance("scenario 2")).getId();
+        int duplicate = pool.intern(Scenario.getInstance("scenario 1")).getId();
+        Assert.assertEquals(new int[]{first, second, duplicate}, new int[]{0, 1, 0}, "Failed to assign dense scenario ids");
+    }
+
+    @Test
+    public void testGetHitCount() {
+        ScenarioPool pool = ScenarioPool.getInstance(false);
+        pool.intern(Scenario.getInstance("scenario 1"));
+        pool.intern(Scenario.getInstance("scenario 2"));
+        pool.intern(Scenario.getInstance("scenario 1"));
+        pool.intern(null);
+        Assert.assertEquals(pool.getHitCount(), 1, "Failed to count pooled scenarios");
+        Assert.assertEquals(pool.getMissCount(), 2, "Failed to count distinct scenarios");
+    }
+}
@@ -0,0 +1,116 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Test
+public class ScenarioSampleTests {
+    private static final int LIMIT = 50;
+    private static final int DISTINCT = 20_000;
+
+    @Test
+    public void testAdd_bounded() {
+        ExecutedTest test = getCappedTest();
+        for (int scenario = 0; scenario < DISTINCT; scenario++) {
+            test.addScenario(Scenario.fromJson(String.valueOf(scenario)));
+            test.addScenario(Scenario.fromJson(String.valueOf(scenario)));
+        }
+        ScenarioSample sample = test.getScenarioSample();
+        Assert.assertEquals(test.getScenarioCount(), LIMIT, "Failed to hold at most the limit of scenarios");
+        Assert.assertEquals(sample.getOccurrences(), 2L * DISTINCT, "Failed to count every scenario occurrence");
+        double error = Math.abs(sample.getDistinctCount() - DISTINCT) / (double) DISTINCT;
+        Assert.assertTrue(error < 0.05, String.format("Failed to estimate distinct scenarios: %d", sample.getDistinctCount()));
+    }
+
+    @Test
+    public void testAdd_orderIndependent() {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (int scenario = 0; scenario < 1_000; scenario++) {
+            scenarios.add(Scenario.fromJson("\"row " + scenario + "\""));
+        }
+        ExecutedTest expected = getCappedTest();
+        scenarios.forEach(expected::addScenario);
+        Collections.shuffle(scenarios);
+        ExecutedTest actual = getCappedTest();
+        scenarios.forEach(actual::addScenario);
+        Assert.assertEquals(actual.getScenarios(), expected.getScenarios(), "Failed to sample the same scenarios in any order");
+    }
+
+    @Test
+    public void testGetDistinctCount_exactUnderLimit() {
+        ExecutedTest test = getCappedTest();
+        for (int scenario = 0; scenario < LIMIT * 3; scenario++) {
+            test.addScenario(Scenario.fromJson(String.valueOf(scenario % LIMIT)));
+        }
+        Assert.assertEquals(test.getScenarioSample().getDistinctCount(), LIMIT, "Failed to count distinct scenarios exactly");
+    }
+
+    @Test
+    public void testCapScenarios() {
+        CoverageReport report = CoverageReport.getInstance().capScenarios(3);
+        report.addTestEntry("test 1", "subject 1", "a");
+        report.addTestEntry("test 1", "subject 1", "b");
+        report.addTestEntry("test 1", "subject 1", "a");
+        String expected = "{\"coverage\":\"system\",\"subjects\":[{\"subject\":\"subject 1\",\"tests\":[{\"test\":\"test 1\","
+                + "\"scenarios\":[{\"scenario\":\"a\"},{\"scenario\":\"b\"}],"
+                + "\"scenarioSample\":{\"limit\":3,\"occurrences\":3,\"distinct\":2}}]}]}";
+        Assert.assertEquals(report.getSystemCoverage(), expected, "Failed to report the scenario sample of a capped test");
+    }
+
+    @Test
+    public void testCapScenarios_subject() {
+        CoverageReport expected = CoverageReport.getInstance();
+        CoverageReport actual = CoverageReport.getInstance().capScenarios("fuzzed", LIMIT);
+        for (int row = 0; row < DISTINCT; row++) {
+            actual.addTimedTestEntry("test 1", "fuzzed", row, List.of(row));
+            actual.addTestEntry("test 1", "subject 1", null, row % 7, "requirement 1");
+            expected.addTestEntry("test 1", "subject 1", null, row % 7, "requirement 1");
+        }
+        Assert.assertEquals(actual.getIndex().getScenarios("fuzzed", "test 1").size(), LIMIT,
+                "Failed to cap the scenarios of a subject");
+        Assert.assertEquals(actual.getRequirementsCoverage(), expected.getRequirementsCoverage(), "Failed to leave tests of other subjects uncapped");
+        Assert.assertTrue(actual.getScenarioPoolMissCount() < DISTINCT / 10,
+                "Failed to keep unsampled scenarios out of the scenario pool");
+    }
+
+    @Test
+    public void testCapScenarios_invalid() throws IOException {
+        Assert.assertThrows(IllegalArgumentException.class, () -> CoverageReport.getInstance().capScenarios(0));
+        Path directory = Files.createTempDirectory("coverage4test-spill");
+        try {
+            CoverageReport spilling = CoverageReport.getInstance().spillTo(directory, 1);
+            Assert.assertThrows(IllegalStateException.class, () -> spilling.capScenarios(LIMIT));
+            CoverageReport capped = CoverageReport.getInstance().capScenarios(LIMIT);
+            Assert.assertThrows(IllegalStateException.class, () -> capped.spillTo(directory, 1));
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    private static ExecutedTest getCappedTest() {
+        ExecutedTest test = ExecutedTest.getInstance("test 1", "subject 1", null, null);
+        //noinspection ConstantConditions
+        test.capScenarios(LIMIT);
+        return test;
+    }
+}
@@ -13,6 +13,7 @@
    limitations under the License.*/
 package org.softwareonpurpose.coverage4test;
 
+import com.google.gson.JsonPrimitive;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -97,4 +98,45 @@ public class ScenarioTests {
         int actual = scenario_1.compareTo(scenario_2);
         Assert.assertEquals(actual, 0, "Failed to return zero for comparison to duplicate Scenario");
     }
+
+    @Test
+    public void testCompareTo_orderedByJson() {
+        Scenario scenario_1 = Scenario.getInstance("b");
+        Scenario scenario_2 = Scenario.getInstance(10L);
+        int actual = Integer.signum(scenario_1.compareTo(scenario_2));
+        int expected = Integer.signum("\"b\"".compareTo("10"));
+        Assert.assertEquals(actual, expected, "Failed to order Scenarios by their JSON representation");
+    }
+
+    @Test
+    public void testEquals_duplicateScenario() {
+        Scenario scenario_1 = Scenario.getInstance("scenario");
+        Scenario scenario_2 = Scenario.getInstance("scenario");
+        Assert.assertEquals(scenario_1, scenario_2, "Failed to recognize duplicate Scenario");
+        Assert.assertEquals(scenario_1.hashCode(), scenario_2.hashCode(), "Failed to return same hash for duplicate Scenario");
+    }
+
+    @Test
+    public void testGetCanonical() {
+        long testValue = 999L;
+        String expected = "999";
+        String actual = Scenario.getInstance(testValue).getCanonical();
+        Assert.assertEquals(actual, expected, "Failed to capture JSON of scenario detail");
+    }
+
+    @Test
+    public void testFromJson() {
+        Scenario expected = Scenario.getInstance("scenario");
+        Scenario actual = Scenario.fromJson(expected.getCanonical());
+        Assert.assertEquals(actual.compareTo(expected), 0, "Failed to rebuild Scenario from its JSON");
+        Assert.assertEquals(actual.getDetail(), new JsonPrimitive("scenario"), "Failed to return parsed JSON as detail");
+    }
+
+    @Test
+    public void testGetCapturedInstance() {
+        Scenario expected = Scenario.getInstance(999L);
+        Scenario actual = Scenario.getCapturedInstance(999L);
+        Assert.assertEquals(actual, expected, "Failed to capture Scenario as its JSON");
+        Assert.assertEquals(actual.getDetail(), new JsonPrimitive(999L), "Failed to return captured JSON as detail");
+    }
 }
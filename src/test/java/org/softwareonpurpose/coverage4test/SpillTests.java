@@ -0,0 +1,203 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+@Test
+public class SpillTests {
+    private static final int ENTRIES = 3_000;
+    private static final long CEILING = 1;
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("coverage4test-spill");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testSpillTo() throws IOException {
+        CoverageReport expected = CoverageReport.getInstance();
+        CoverageReport actual = CoverageReport.getInstance().spillTo(directory, CEILING);
+        recordEntries(expected, 0, ENTRIES);
+        recordEntries(actual, 0, ENTRIES);
+        Assert.assertTrue(actual.getMetrics().getSpillCount() > 1, "Failed to spill entries beyond the memory ceiling");
+        Assert.assertEquals(actual.getSystemCoverage(), expected.getSystemCoverage(), "Failed to merge spilled System Coverage");
+        Assert.assertEquals(actual.getRequirementsCoverage(), expected.getRequirementsCoverage(),
+                "Failed to merge spilled Requirements Coverage");
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to merge spilled report");
+    }
+
+    @Test
+    public void testClose_deletesRuns() throws IOException {
+        CoverageReport report = CoverageReport.getInstance().spillTo(directory, CEILING);
+        recordEntries(report, 0, ENTRIES);
+        report.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertEquals(files.count(), 0, "Failed to delete run files on close");
+        }
+    }
+
+    @Test
+    public void testSpillTo_cascade() throws IOException {
+        int entries = 256 * (SpilledRuns.FAN_IN + 4);
+        CoverageReport expected = CoverageReport.getInstance();
+        CoverageReport actual = CoverageReport.getInstance().spillTo(directory, CEILING);
+        recordEntries(expected, 0, entries);
+        recordEntries(actual, 0, entries);
+        Assert.assertTrue(actual.getMetrics().getSpillCount() > SpilledRuns.FAN_IN, "Failed to spill more runs than the fan-in");
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to merge spilled runs in a cascade");
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertTrue(files.count() <= SpilledRuns.FAN_IN, "Failed to merge runs down to the fan-in");
+        }
+        recordEntries(expected, 0, ENTRIES);
+        recordEntries(actual, 0, ENTRIES);
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to merge entries recorded after a cascade");
+    }
+
+    @Test
+    public void testSpillTo_renderAgain() throws IOException {
+        CoverageReport expected = CoverageReport.getInstance();
+        CoverageReport actual = CoverageReport.getInstance().spillTo(directory, CEILING);
+        recordEntries(expected, 0, ENTRIES / 2);
+        recordEntries(actual, 0, ENTRIES / 2);
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to merge spilled report");
+        recordEntries(expected, ENTRIES / 2, ENTRIES);
+        recordEntries(actual, ENTRIES / 2, ENTRIES);
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to merge entries recorded after rendering");
+    }
+
+    @Test
+    public void testSpillTo_retainedBytes() throws IOException {
+        CoverageReport report = CoverageReport.getInstance().spillTo(directory, 64 * 1024);
+        long maximum = 0;
+        for (int entry = 0; entry < ENTRIES * 10; entry++) {
+            report.addTestEntry("test " + entry, "subject " + entry % 7, null, "scenario " + entry, "requirement " + entry % 11);
+            maximum = Math.max(maximum, report.getMetrics().getEstimatedRetainedBytes());
+        }
+        Assert.assertTrue(maximum < 2 * 64 * 1024, String.format("Failed to bound retained bytes: %d", maximum));
+    }
+
+    @Test
+    public void testSpillTo_handles() throws IOException {
+        CoverageReport expected = CoverageReport.getInstance();
+        CoverageReport actual = CoverageReport.getInstance().spillTo(directory, CEILING);
+        List<TestHandle> handles = new ArrayList<>();
+        for (int test = 0; test < 10; test++) {
+            handles.add(actual.test("subject " + test % 3, "test " + test, "requirement " + test % 4));
+        }
+        for (int row = 0; row < ENTRIES; row++) {
+            int test = row % 10;
+            expected.addTestEntry("test " + test, "subject " + test % 3, row % 4, "row " + row % 13, "requirement " + test % 4);
+            handles.get(test).record(row % 4, "row " + row % 13);
+        }
+        Assert.assertTrue(actual.getMetrics().getSpillCount() > 1, "Failed to spill entries recorded through handles");
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to record through handles across spills");
+    }
+
+    @Test
+    public void testSpillTo_concurrent() throws Exception {
+        int threads = 8;
+        CoverageReport expected = CoverageReport.getInstance();
+        for (int thread = 0; thread < threads; thread++) {
+            recordEntries(expected, thread * ENTRIES, (thread + 1) * ENTRIES);
+        }
+        CoverageReport actual = CoverageReport.getConcurrentInstance().spillTo(directory, CEILING);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < threads; thread++) {
+                int first = thread * ENTRIES;
+                results.add(executor.submit(() -> {
+                    recordEntries(actual, first, first + ENTRIES);
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        String withoutCounts = "\"verificationCount\":\\d+,";
+        Assert.assertEquals(actual.toString().replaceAll(withoutCounts, ""), expected.toString().replaceAll(withoutCounts, ""),
+                "Failed to merge entries spilled from concurrent threads");
+    }
+
+    @Test
+    public void testSpillTo_empty() throws IOException {
+        CoverageReport expected = CoverageReport.getInstance();
+        CoverageReport actual = CoverageReport.getInstance().spillTo(directory, CEILING);
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to render an empty spilling report");
+    }
+
+    @Test
+    public void testSpillTo_unavailableOnceSpilled() throws IOException {
+        CoverageReport report = CoverageReport.getInstance().spillTo(directory, CEILING);
+        Assert.assertNotNull(report.getIndex(), "Failed to index a report yet to spill");
+        recordEntries(report, 0, ENTRIES);
+        Assert.assertThrows(IllegalStateException.class, report::getIndex);
+        Assert.assertThrows(IllegalStateException.class, () -> report.writeBinaryTo(directory.resolve("report.bin"), false));
+        Assert.assertThrows(IllegalStateException.class, () -> report.spillTo(directory, CEILING));
+        Assert.assertThrows(IllegalArgumentException.class, () -> CoverageReport.getInstance().spillTo(directory, 0));
+    }
+
+    /***
+     * Entries of tests recurring across spills, with timings, changing verification counts, null test data
+     * and requirement-only entries
+     */
+    private static void recordEntries(CoverageReport report, int first, int last) {
+        for (int entry = first; entry < last; entry++) {
+            String test = "test " + entry % 37;
+            String subject = "subject " + entry % 5;
+            switch (entry % 4) {
+                case 0:
+                    report.addTestEntry(test, subject, entry % 3 == 0 ? null : entry, "scenario " + entry % 101,
+                            "requirement " + entry % 13);
+                    break;
+                case 1:
+                    report.addTimedTestEntry(test, subject, entry * 1_000L, List.of(entry % 11));
+                    break;
+                case 2:
+                    report.addRequirementTestEntry(test, subject, "requirement " + entry % 17, "requirement 0");
+                    break;
+                default:
+                    report.addTestEntry(test, subject, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*Copyright 2018 - 2022 Craig A. Stockton
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.*/
+package org.softwareonpurpose.coverage4test;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@Test
+public class TestHandleTests {
+    private static final int ROWS = 200;
+
+    @Test
+    public void testRecord() {
+        CoverageReport expected = CoverageReport.getInstance();
+        CoverageReport actual = CoverageReport.getInstance();
+        for (int row = 0; row < ROWS; row++) {
+            expected.addTestEntry("test 1", "subject 1", null, "row " + row % 17, "requirement 1", "requirement 2");
+        }
+        TestHandle handle = actual.test("subject 1", "test 1", "requirement 1", "requirement 2");
+        for (int row = 0; row < ROWS; row++) {
+            handle.record("row " + row % 17);
+        }
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to record through a handle as through entries");
+        Assert.assertEquals(actual.getMetrics().getEntryCount(), ROWS, "Failed to count entries recorded through a handle");
+        Assert.assertEquals(actual.getMetrics().getRequirementLinkCount(), expected.getMetrics().getRequirementLinkCount(),
+                "Failed to count requirement links of a handle");
+    }
+
+    @Test
+    public void testGetTest_generation() {
+        TestHandle handle = CoverageReport.getInstance().test("subject 1", "test 1");
+        ExecutedTest first = ExecutedTest.getInstance("test 1", "subject 1", null, null);
+        ExecutedTest second = ExecutedTest.getInstance("test 1", "subject 1", null, null);
+        handle.setTest(first, 1);
+        handle.setTest(second, 2);
+        Assert.assertNull(handle.getTest(1), "Failed to forget the test of an earlier generation");
+        Assert.assertSame(handle.getTest(2), second, "Failed to keep the test of the current generation");
+    }
+
+    @Test
+    public void testRecordVerifications_firstWins() {
+        CoverageReport expected = CoverageReport.getInstance();
+        CoverageReport actual = CoverageReport.getInstance();
+        expected.addTestEntry("test 1", "subject 1", 3, null);
+        expected.addTestEntry("test 1", "subject 1", 5, "row");
+        TestHandle handle = actual.test("subject 1", "test 1");
+        handle.recordVerifications(3);
+        handle.record(5, "row");
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to keep the first verification count");
+    }
+
+    @Test
+    public void testRecordTimed() {
+        CoverageReport expected = CoverageReport.getInstance();
+        CoverageReport actual = CoverageReport.getInstance();
+        TestHandle handle = actual.test("subject 1", "test 1", "requirement 1");
+        for (int row = 0; row < ROWS; row++) {
+            expected.addTimedTestEntry("test 1", "subject 1", row * 1_000L, null, "row " + row % 3, "requirement 1");
+            handle.recordTimed(row * 1_000L, "row " + row % 3);
+        }
+        Assert.assertEquals(actual.toString(), expected.toString(), "Failed to record timed executions through a handle");
+        Assert.assertThrows(IllegalArgumentException.class, () -> handle.recordTimed(-1, null));
+    }
+
+    @Test
+    public void testRecord_asyncAndCaptured() {
+        CoverageReport expected = CoverageReport.getInstance();
+        for (int row = 0; row < ROWS; row++) {
+            expected.addTestEntry("test 1", "subject 1", null, List.of(row % 5), "requirement 1");
+        }
+        for (CoverageReport actual : List.of(CoverageReport.getAsyncInstance(16, BackpressurePolicy.BLOCK),
+                CoverageReport.getConcurrentInstance().captureTestData())) {
+            TestHandle handle = actual.test("subject 1", "test 1", "requirement 1");
+            for (int row = 0; row < ROWS; row++) {
+                handle.record(List.of(row % 5));
+            }
+            actual.close();
+            Assert.assertEquals(actual.toString(), expected.toString(), "Failed to record through a handle of an async or capturing report");
+        }
+    }
+
+    @Test
+    public void testRecord_journaled() throws IOException {
+        Path path = Files.createTempFile("coverage", ".journal");
+        Files.delete(path);
+        try {
+            CoverageReport report = CoverageReport.getInstance().journalTo(path);
+            TestHandle handle = report.test("subject 1", "test 1", "requirement 1");
+            for (int row = 0; row < ROWS; row++) {
+                handle.record("row " + row % 7);
+            }
+            report.close();
+            Assert.assertEquals(CoverageReport.replay(path).toString(), report.toString(), "Failed to journal entries recorded through a handle");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testRecord_invalidTest() {
+        CoverageReport report = CoverageReport.getInstance();
+        TestHandle handle = report.test("subject 1", " ");
+        handle.record("row");
+        handle.record("row");
+        Assert.assertEquals(report.getTestCount(), 0, "Failed to ignore entries of a test with no name");
+    }
+}